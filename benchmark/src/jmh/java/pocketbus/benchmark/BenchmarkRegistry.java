@@ -0,0 +1,10 @@
+package pocketbus.benchmark;
+
+import pocketbus.Registry;
+
+/**
+ * Generates pocketbus.benchmark.BusRegistry for the @Subscribe methods used by the benchmarks
+ */
+@Registry
+public class BenchmarkRegistry {
+}
@@ -0,0 +1,13 @@
+package pocketbus.benchmark;
+
+import pocketbus.Subscribe;
+import pocketbus.ThreadMode;
+
+/**
+ * Inherits the subscriptions of {@link Subscriber}, its generated registration chains to the parent registration
+ */
+public class ChildSubscriber extends Subscriber {
+    @Subscribe(ThreadMode.CURRENT)
+    public void onChild(EventTypes.Event3 event) {
+    }
+}
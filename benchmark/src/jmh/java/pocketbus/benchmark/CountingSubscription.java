@@ -0,0 +1,52 @@
+package pocketbus.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import pocketbus.Subscription;
+import pocketbus.ThreadMode;
+
+/**
+ * Hand written subscription counting its deliveries, so async benchmarks can wait for their events to be handled
+ */
+final class CountingSubscription<T> implements Subscription<T> {
+    private final Class<T> eventClass;
+    private final ThreadMode threadMode;
+    private final AtomicLong delivered;
+    private final Object target = new Object();
+
+    CountingSubscription(Class<T> eventClass, ThreadMode threadMode, AtomicLong delivered) {
+        this.eventClass = eventClass;
+        this.threadMode = threadMode;
+        this.delivered = delivered;
+    }
+
+    @Override
+    public boolean handle(T t) {
+        delivered.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Class<T> getEventClass() {
+        return eventClass;
+    }
+
+    @Override
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    @Override
+    public Object getTarget() {
+        return target;
+    }
+
+    /**
+     * Spins until at least expected events have been delivered
+     */
+    static void await(AtomicLong delivered, long expected) {
+        while (delivered.get() < expected) {
+            Thread.yield();
+        }
+    }
+}
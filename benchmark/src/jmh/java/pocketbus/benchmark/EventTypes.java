@@ -0,0 +1,112 @@
+package pocketbus.benchmark;
+
+/**
+ * Unrelated event classes used to register subscriptions for many distinct event types
+ */
+final class EventTypes {
+    static final Class<?>[] TYPES = {
+            Event0.class, Event1.class, Event2.class, Event3.class, Event4.class, Event5.class, Event6.class, Event7.class,
+            Event8.class, Event9.class, Event10.class, Event11.class, Event12.class, Event13.class, Event14.class, Event15.class,
+            Event16.class, Event17.class, Event18.class, Event19.class, Event20.class, Event21.class, Event22.class, Event23.class,
+            Event24.class, Event25.class, Event26.class, Event27.class, Event28.class, Event29.class, Event30.class, Event31.class
+    };
+
+    static final class Event0 {
+    }
+
+    static final class Event1 {
+    }
+
+    static final class Event2 {
+    }
+
+    static final class Event3 {
+    }
+
+    static final class Event4 {
+    }
+
+    static final class Event5 {
+    }
+
+    static final class Event6 {
+    }
+
+    static final class Event7 {
+    }
+
+    static final class Event8 {
+    }
+
+    static final class Event9 {
+    }
+
+    static final class Event10 {
+    }
+
+    static final class Event11 {
+    }
+
+    static final class Event12 {
+    }
+
+    static final class Event13 {
+    }
+
+    static final class Event14 {
+    }
+
+    static final class Event15 {
+    }
+
+    static final class Event16 {
+    }
+
+    static final class Event17 {
+    }
+
+    static final class Event18 {
+    }
+
+    static final class Event19 {
+    }
+
+    static final class Event20 {
+    }
+
+    static final class Event21 {
+    }
+
+    static final class Event22 {
+    }
+
+    static final class Event23 {
+    }
+
+    static final class Event24 {
+    }
+
+    static final class Event25 {
+    }
+
+    static final class Event26 {
+    }
+
+    static final class Event27 {
+    }
+
+    static final class Event28 {
+    }
+
+    static final class Event29 {
+    }
+
+    static final class Event30 {
+    }
+
+    static final class Event31 {
+    }
+
+    private EventTypes() {
+    }
+}
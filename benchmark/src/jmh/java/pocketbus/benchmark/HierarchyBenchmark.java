@@ -0,0 +1,94 @@
+package pocketbus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+import pocketbus.Bus;
+import pocketbus.Registration;
+import pocketbus.ThreadMode;
+
+/**
+ * Posting an event whose class hierarchy is deep and implements several interfaces, with subscriptions at every level.
+ * <p>
+ * post() hits the per event class lookup cache, postAfterRegister() changes the registered subscriptions first so every post resolves
+ * the hierarchy again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HierarchyBenchmark {
+    private final AtomicLong delivered = new AtomicLong();
+    private Bus bus;
+    private Level5 event;
+    private CountingSubscription<EventTypes.Event31> unrelated;
+
+    @Setup
+    public void setup() {
+        bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .build();
+        Class<?>[] types = {Object.class, Marker.class, Named.class, Ordered.class, Level0.class, Level1.class, Level2.class,
+                Level3.class, Level4.class, Level5.class};
+        for (Class<?> type : types) {
+            register(type);
+        }
+        for (Class<?> type : EventTypes.TYPES) {
+            register(type);
+        }
+        event = new Level5();
+        unrelated = new CountingSubscription<>(EventTypes.Event31.class, ThreadMode.CURRENT, delivered);
+    }
+
+    private <T> void register(Class<T> eventClass) {
+        bus.register(new CountingSubscription<>(eventClass, ThreadMode.CURRENT, delivered));
+    }
+
+    @Benchmark
+    public void post() {
+        bus.post(event);
+    }
+
+    @Benchmark
+    public void postAfterRegister() {
+        Registration registration = bus.register(unrelated);
+        bus.post(event);
+        registration.unregister();
+    }
+
+    interface Marker {
+    }
+
+    interface Named extends Marker {
+    }
+
+    interface Ordered {
+    }
+
+    static class Level0 implements Marker {
+    }
+
+    static class Level1 extends Level0 implements Named {
+    }
+
+    static class Level2 extends Level1 {
+    }
+
+    static class Level3 extends Level2 implements Ordered {
+    }
+
+    static class Level4 extends Level3 {
+    }
+
+    static final class Level5 extends Level4 {
+    }
+}
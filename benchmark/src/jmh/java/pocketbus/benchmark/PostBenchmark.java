@@ -0,0 +1,120 @@
+package pocketbus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+import pocketbus.Bus;
+import pocketbus.OverflowPolicy;
+import pocketbus.ThreadMode;
+import pocketbus.WaitStrategy;
+
+/**
+ * Throughput of {@link Bus#post(Object)} and {@link Bus#postAll(Object...)} including delivery.
+ * <p>
+ * eventTypes distinct event classes are registered with subscribers subscriptions each, one of them receives the posted events.
+ * Each invocation posts a batch of events and waits until all of them have been handled.
+ * <p>
+ * background picks the bus's own ThreadMode.BACKGROUND dispatcher, the same configurations as {@link LatencyHarness},
+ * and only matters for threadMode BACKGROUND.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PostBenchmark {
+    private static final int BATCH = 100;
+    private static final int BACKGROUND_THREADS = 2;
+
+    @Param({"CURRENT", "MAIN", "BACKGROUND"})
+    ThreadMode threadMode;
+    @Param({"1", "8", "32"})
+    int eventTypes;
+    @Param({"1", "10", "100"})
+    int subscribers;
+    @Param({"pool", "bounded", "ordered", "adaptive", "ring", "virtual"})
+    String background;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private ExecutorService mainExecutor;
+    private Bus bus;
+    private Object event;
+    private Object[] batch;
+
+    @Setup
+    public void setup() throws Exception {
+        mainExecutor = Executors.newSingleThreadExecutor();
+        bus = backgroundConfiguration(new Bus.Builder().setBackgroundThreadPoolSize(BACKGROUND_THREADS))
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .build();
+        for (int type = 0; type < eventTypes; type++) {
+            for (int i = 0; i < subscribers; i++) {
+                register(EventTypes.TYPES[type]);
+            }
+        }
+        event = EventTypes.TYPES[0].newInstance();
+        batch = new Object[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = event;
+        }
+    }
+
+    private Bus.Builder backgroundConfiguration(Bus.Builder builder) {
+        switch (background) {
+            case "pool":
+                return builder;
+            case "bounded":
+                return builder.setBackgroundQueueCapacity(1024, OverflowPolicy.BLOCK);
+            case "ordered":
+                return builder.setOrderedBackgroundDelivery(true);
+            case "adaptive":
+                return builder.setAdaptiveBackgroundPool(1, BACKGROUND_THREADS, 1, TimeUnit.MILLISECONDS);
+            case "ring":
+                return builder.setBackgroundRingBuffer(1024, WaitStrategy.PARK);
+            case "virtual":
+                return builder.setVirtualThreadBackground(BACKGROUND_THREADS);
+            default:
+                throw new IllegalArgumentException("Unknown background configuration " + background);
+        }
+    }
+
+    private <T> void register(Class<T> eventClass) {
+        bus.register(new CountingSubscription<>(eventClass, threadMode, delivered));
+    }
+
+    @TearDown
+    public void tearDown() {
+        // The bus owns its background threads and cannot stop them, they end with the forked benchmark VM
+        mainExecutor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void post() {
+        long expected = delivered.get() + (long) BATCH * subscribers;
+        for (int i = 0; i < BATCH; i++) {
+            bus.post(event);
+        }
+        CountingSubscription.await(delivered, expected);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void postAll() {
+        long expected = delivered.get() + (long) BATCH * subscribers;
+        bus.postAll(batch);
+        CountingSubscription.await(delivered, expected);
+    }
+}
@@ -0,0 +1,62 @@
+package pocketbus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import pocketbus.Bus;
+import pocketbus.Registration;
+
+/**
+ * Cost of registering and unregistering a target through its generated SubscriptionRegistration
+ * while registeredTargets other targets are registered with the bus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistrationBenchmark {
+    @Param({"0", "100", "1000"})
+    int registeredTargets;
+
+    private final List<Subscriber> targets = new ArrayList<>();
+    private Bus bus;
+
+    @Setup
+    public void setup() {
+        bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .build();
+        bus.setRegistry(new BusRegistry());
+        for (int i = 0; i < registeredTargets; i++) {
+            Subscriber target = i % 2 == 0 ? new Subscriber() : new ChildSubscriber();
+            targets.add(target);
+            bus.register(target);
+        }
+    }
+
+    @Benchmark
+    public Subscriber registerUnregisterTarget() {
+        Subscriber target = new ChildSubscriber();
+        bus.register(target);
+        bus.unregister(target);
+        return target;
+    }
+
+    @Benchmark
+    public Registration registerUnregisterHandle() {
+        Registration registration = bus.register(new ChildSubscriber());
+        registration.unregister();
+        return registration;
+    }
+}
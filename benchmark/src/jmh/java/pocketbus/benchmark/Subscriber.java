@@ -0,0 +1,21 @@
+package pocketbus.benchmark;
+
+import pocketbus.Subscribe;
+import pocketbus.ThreadMode;
+
+/**
+ * Target with a generated SubscriptionRegistration covering every ThreadMode
+ */
+public class Subscriber {
+    @Subscribe(ThreadMode.CURRENT)
+    public void onCurrent(EventTypes.Event0 event) {
+    }
+
+    @Subscribe(ThreadMode.MAIN)
+    public void onMain(EventTypes.Event1 event) {
+    }
+
+    @Subscribe(ThreadMode.BACKGROUND)
+    public void onBackground(EventTypes.Event2 event) {
+    }
+}
@@ -0,0 +1,448 @@
+package pocketbus.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.schedulers.Schedulers;
+import pocketbus.Bus;
+import pocketbus.OverflowPolicy;
+import pocketbus.Subscription;
+import pocketbus.ThreadMode;
+import pocketbus.WaitStrategy;
+
+/**
+ * Measures the latency from {@link Bus#post(Object)} to {@link Subscription#handle(Object)}.
+ * <p>
+ * Producers post at a fixed rate and every event carries the time it was meant to be posted, so a stalled producer or bus shows up
+ * in the histogram instead of silently lowering the rate. The producers pause after the warmup until its events have been delivered,
+ * so none of them are recorded. BACKGROUND is run against each configuration of the bus's own
+ * BACKGROUND dispatcher and each thread count, and the percentiles are written as JSON or CSV so runs can be compared.
+ * Deliveries dropped by a bounded queue are reported as dropped.
+ * <p>
+ * BACKGROUND configurations, each built with Bus.Builder.setBackgroundThreadPoolSize(threads):
+ * <pre>
+ * pool       the default fixed pool
+ * bounded    setBackgroundQueueCapacity(queueCapacity, overflow)
+ * ordered    setOrderedBackgroundDelivery(true)
+ * adaptive   setAdaptiveBackgroundPool(1, threads, targetWait)
+ * ring       setBackgroundRingBuffer(ringCapacity, waitStrategy)
+ * virtual    setVirtualThreadBackground(threads), the default pool before Java 21
+ * </pre>
+ * The bus has no way to stop its threads, so the threads of every configuration keep running until the harness exits.
+ * Ring buffers with BUSY_SPIN or YIELD keep their cores busy and skew the runs after them, measure them in their own invocation.
+ * <p>
+ * Options, all optional:
+ * <pre>
+ * --modes CURRENT,MAIN,BACKGROUND   ThreadModes to measure
+ * --background pool,ring            BACKGROUND configurations, see above
+ * --backgroundThreads 2,4           BACKGROUND thread counts, 2 is the Bus.Builder default
+ * --queueCapacity 1024              for bounded
+ * --overflow BLOCK                  OverflowPolicy for bounded
+ * --targetWait 1000                 microseconds, for adaptive
+ * --ringCapacity 1024               for ring
+ * --waitStrategy PARK               WaitStrategy for ring
+ * --producers 2                     posting threads
+ * --rate 10000                      events per second per producer
+ * --subscribers 1                   subscriptions receiving every event
+ * --warmup 5 --duration 10          seconds
+ * --format json|csv                 default json
+ * --output file                     default stdout
+ * --verbose                         print each result to stderr as it finishes
+ * </pre>
+ */
+public final class LatencyHarness {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final List<String> BACKGROUND_CONFIGURATIONS = Arrays.asList("pool", "bounded", "ordered", "adaptive", "ring", "virtual");
+    /**
+     * How long the deliveries of a run may make no progress before the rest are counted as dropped
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 1000;
+
+    private LatencyHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LatencyHarness [--modes CURRENT,MAIN,BACKGROUND] [--background " + join(BACKGROUND_CONFIGURATIONS)
+                    + "] [--backgroundThreads 2,4] [--queueCapacity n] [--overflow BLOCK|DROP_NEWEST|DROP_OLDEST|FAIL_FAST] [--targetWait micros] "
+                    + "[--ringCapacity n] [--waitStrategy BUSY_SPIN|YIELD|PARK] [--producers n] [--rate n] [--subscribers n] "
+                    + "[--warmup seconds] [--duration seconds] [--format json|csv] [--output file] [--verbose]");
+            System.exit(2);
+            return;
+        }
+        List<Result> results = new ArrayList<>();
+        for (ThreadMode threadMode : options.modes) {
+            for (String background : options.background) {
+                for (int backgroundThreads : options.backgroundThreads) {
+                    if (threadMode != ThreadMode.BACKGROUND
+                            && (!background.equals(options.background[0]) || backgroundThreads != options.backgroundThreads[0])) {
+                        continue; // the BACKGROUND configuration only matters for BACKGROUND
+                    }
+                    Result result = run(options, threadMode, background, backgroundThreads);
+                    if (options.verbose) {
+                        System.err.println(result.toCsv());
+                    }
+                    results.add(result);
+                }
+            }
+        }
+
+        PrintWriter writer = options.output == null ? new PrintWriter(System.out)
+                : new PrintWriter(new OutputStreamWriter(new FileOutputStream(options.output), "UTF-8"));
+        try {
+            if (options.csv) {
+                writer.println(Result.CSV_HEADER);
+                for (Result result : results) {
+                    writer.println(result.toCsv());
+                }
+            } else {
+                writer.println("[");
+                for (int i = 0; i < results.size(); i++) {
+                    writer.print("  " + results.get(i).toJson());
+                    writer.println(i < results.size() - 1 ? "," : "");
+                }
+                writer.println("]");
+            }
+        } finally {
+            writer.close();
+        }
+        // The background threads of the buses never stop
+        System.exit(0);
+    }
+
+    private static Result run(Options options, ThreadMode threadMode, String background, int backgroundThreads)
+            throws InterruptedException {
+        ExecutorService mainExecutor = Executors.newSingleThreadExecutor();
+        Bus bus = backgroundConfiguration(options, background, backgroundThreads)
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .build();
+        Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        AtomicLong delivered = new AtomicLong();
+        for (int i = 0; i < options.subscribers; i++) {
+            bus.register(new RecordingSubscription(threadMode, recorder, delivered));
+        }
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        AtomicLong posted = new AtomicLong();
+        produce(bus, options, TimeUnit.SECONDS.toNanos(options.warmupSeconds), intervalNanos, posted);
+        // Warmup events still queued would otherwise be recorded with the measurement
+        awaitDeliveries(delivered, posted.get() * options.subscribers);
+        long warmupDelivered = delivered.get();
+        posted.set(0);
+        recorder.reset();
+        produce(bus, options, TimeUnit.SECONDS.toNanos(options.durationSeconds), intervalNanos, posted);
+        long expected = posted.get() * options.subscribers;
+        awaitDeliveries(delivered, warmupDelivered + expected);
+        long dropped = expected - (delivered.get() - warmupDelivered);
+        mainExecutor.shutdown();
+        mainExecutor.awaitTermination(1, TimeUnit.MINUTES);
+
+        return new Result(threadMode, background, backgroundThreads, options, recorder.getIntervalHistogram(), dropped);
+    }
+
+    /**
+     * Posts from every producer at the configured rate for durationNanos and waits for the producers to finish
+     */
+    private static void produce(Bus bus, Options options, long durationNanos, long intervalNanos, AtomicLong posted)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < options.producers; i++) {
+            Thread producer = new Thread(new Producer(bus, start, end, intervalNanos, posted), "producer-" + i);
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static Bus.Builder backgroundConfiguration(Options options, String background, int threads) {
+        Bus.Builder builder = new Bus.Builder()
+                .setBackgroundThreadPoolSize(threads);
+        switch (background) {
+            case "pool":
+                return builder;
+            case "bounded":
+                return builder.setBackgroundQueueCapacity(options.queueCapacity, options.overflow);
+            case "ordered":
+                return builder.setOrderedBackgroundDelivery(true);
+            case "adaptive":
+                return builder.setAdaptiveBackgroundPool(1, threads, options.targetWaitMicros, TimeUnit.MICROSECONDS);
+            case "ring":
+                return builder.setBackgroundRingBuffer(options.ringCapacity, options.waitStrategy);
+            case "virtual":
+                return builder.setVirtualThreadBackground(threads);
+            default:
+                throw new IllegalArgumentException("Unknown background configuration " + background);
+        }
+    }
+
+    /**
+     * Waits until expected events have been delivered or no delivery has been made for {@link #DRAIN_TIMEOUT_MILLIS}
+     */
+    private static void awaitDeliveries(AtomicLong delivered, long expected) throws InterruptedException {
+        long last = -1;
+        long lastProgress = System.currentTimeMillis();
+        while (delivered.get() < expected) {
+            long current = delivered.get();
+            if (current != last) {
+                last = current;
+                lastProgress = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastProgress > DRAIN_TIMEOUT_MILLIS) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    static final class LatencyEvent {
+        final long intendedNanos;
+
+        LatencyEvent(long intendedNanos) {
+            this.intendedNanos = intendedNanos;
+        }
+    }
+
+    private static final class Producer implements Runnable {
+        private final Bus bus;
+        private final long start;
+        private final long end;
+        private final long intervalNanos;
+        private final AtomicLong posted;
+
+        Producer(Bus bus, long start, long end, long intervalNanos, AtomicLong posted) {
+            this.bus = bus;
+            this.start = start;
+            this.end = end;
+            this.intervalNanos = intervalNanos;
+            this.posted = posted;
+        }
+
+        @Override
+        public void run() {
+            for (long intended = start; intended < end; intended += intervalNanos) {
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                posted.incrementAndGet();
+                try {
+                    bus.post(new LatencyEvent(intended));
+                } catch (RejectedExecutionException e) {
+                    // OverflowPolicy.FAIL_FAST, counted as dropped
+                }
+            }
+        }
+    }
+
+    private static final class RecordingSubscription implements Subscription<LatencyEvent> {
+        private final ThreadMode threadMode;
+        private final Recorder recorder;
+        private final AtomicLong delivered;
+        private final Object target = new Object();
+
+        RecordingSubscription(ThreadMode threadMode, Recorder recorder, AtomicLong delivered) {
+            this.threadMode = threadMode;
+            this.recorder = recorder;
+            this.delivered = delivered;
+        }
+
+        @Override
+        public boolean handle(LatencyEvent event) {
+            recorder.recordValue(Math.min(System.nanoTime() - event.intendedNanos, HIGHEST_TRACKABLE_NANOS));
+            delivered.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public Class<LatencyEvent> getEventClass() {
+            return LatencyEvent.class;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return threadMode;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+    }
+
+    private static final class Result {
+        static final String CSV_HEADER = "threadMode,background,backgroundThreads,producers,ratePerProducer,subscribers,count,dropped,"
+                + "p50Micros,p90Micros,p99Micros,p999Micros,maxMicros,meanMicros";
+
+        final ThreadMode threadMode;
+        final String background;
+        final int backgroundThreads;
+        final Options options;
+        final Histogram histogram;
+        final long dropped;
+
+        Result(ThreadMode threadMode, String background, int backgroundThreads, Options options, Histogram histogram, long dropped) {
+            this.threadMode = threadMode;
+            this.background = background;
+            this.backgroundThreads = backgroundThreads;
+            this.options = options;
+            this.histogram = histogram;
+            this.dropped = dropped;
+        }
+
+        String toCsv() {
+            return String.format(Locale.US, "%s,%s,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f", threadMode, background,
+                    backgroundThreads, options.producers, options.rate, options.subscribers, histogram.getTotalCount(), dropped,
+                    micros(50), micros(90), micros(99), micros(99.9), histogram.getMaxValue() / 1000.0, histogram.getMean() / 1000.0);
+        }
+
+        String toJson() {
+            return String.format(Locale.US, "{\"threadMode\": \"%s\", \"background\": \"%s\", \"backgroundThreads\": %d, "
+                            + "\"producers\": %d, \"ratePerProducer\": %d, \"subscribers\": %d, \"count\": %d, \"dropped\": %d, "
+                            + "\"p50Micros\": %.3f, \"p90Micros\": %.3f, \"p99Micros\": %.3f, \"p999Micros\": %.3f, \"maxMicros\": %.3f, "
+                            + "\"meanMicros\": %.3f}", threadMode, background, backgroundThreads, options.producers, options.rate,
+                    options.subscribers, histogram.getTotalCount(), dropped, micros(50), micros(90), micros(99), micros(99.9),
+                    histogram.getMaxValue() / 1000.0, histogram.getMean() / 1000.0);
+        }
+
+        private double micros(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    private static final class Options {
+        ThreadMode[] modes = ThreadMode.values();
+        String[] background = {"pool"};
+        int[] backgroundThreads = {2};
+        int queueCapacity = 1024;
+        OverflowPolicy overflow = OverflowPolicy.BLOCK;
+        long targetWaitMicros = 1000;
+        int ringCapacity = 1024;
+        WaitStrategy waitStrategy = WaitStrategy.PARK;
+        int producers = 2;
+        long rate = 10000;
+        int subscribers = 1;
+        long warmupSeconds = 5;
+        long durationSeconds = 10;
+        boolean csv = false;
+        String output;
+        boolean verbose = false;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--verbose")) {
+                    options.verbose = true;
+                    continue;
+                }
+                if (++i >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[i];
+                switch (option) {
+                    case "--modes":
+                        String[] modes = value.split(",");
+                        options.modes = new ThreadMode[modes.length];
+                        for (int m = 0; m < modes.length; m++) {
+                            options.modes[m] = ThreadMode.valueOf(modes[m].trim().toUpperCase(Locale.US));
+                        }
+                        break;
+                    case "--background":
+                        options.background = value.split(",");
+                        for (int b = 0; b < options.background.length; b++) {
+                            options.background[b] = options.background[b].trim().toLowerCase(Locale.US);
+                            if (!BACKGROUND_CONFIGURATIONS.contains(options.background[b])) {
+                                throw new IllegalArgumentException("Unknown background configuration " + options.background[b]
+                                        + ", expected one of " + BACKGROUND_CONFIGURATIONS);
+                            }
+                        }
+                        break;
+                    case "--backgroundThreads":
+                        String[] sizes = value.split(",");
+                        options.backgroundThreads = new int[sizes.length];
+                        for (int s = 0; s < sizes.length; s++) {
+                            options.backgroundThreads[s] = Integer.parseInt(sizes[s].trim());
+                        }
+                        break;
+                    case "--queueCapacity":
+                        options.queueCapacity = Integer.parseInt(value);
+                        break;
+                    case "--overflow":
+                        options.overflow = OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.US));
+                        break;
+                    case "--targetWait":
+                        options.targetWaitMicros = Long.parseLong(value);
+                        break;
+                    case "--ringCapacity":
+                        options.ringCapacity = Integer.parseInt(value);
+                        break;
+                    case "--waitStrategy":
+                        options.waitStrategy = WaitStrategy.valueOf(value.trim().toUpperCase(Locale.US));
+                        break;
+                    case "--producers":
+                        options.producers = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        options.rate = Long.parseLong(value);
+                        break;
+                    case "--subscribers":
+                        options.subscribers = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        options.warmupSeconds = Long.parseLong(value);
+                        break;
+                    case "--duration":
+                        options.durationSeconds = Long.parseLong(value);
+                        break;
+                    case "--format":
+                        if (!"csv".equalsIgnoreCase(value) && !"json".equalsIgnoreCase(value)) {
+                            throw new IllegalArgumentException("Unknown format " + value + ", expected json or csv");
+                        }
+                        options.csv = "csv".equalsIgnoreCase(value);
+                        break;
+                    case "--output":
+                        options.output = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (options.rate < 1 || options.producers < 1 || options.subscribers < 1) {
+                throw new IllegalArgumentException("rate, producers and subscribers must be >= 1");
+            }
+            return options;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Set;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.type.TypeMirror;
 
+import pocketbus.ConfiguredSubscription;
 import pocketbus.SubscriptionRegistration;
 import pocketbus.Subscription;
 import pocketbus.ThreadMode;
@@ -123,9 +124,12 @@ public class SubscriptionGenerator {
 
             ParameterizedTypeName subscriptionType = ParameterizedTypeName.get(ClassName.get(Subscription.class),
                     TypeName.get(subscription.getEventType()));
+            ParameterizedTypeName implementedType = subscription.isConfigured()
+                    ? ParameterizedTypeName.get(ClassName.get(ConfiguredSubscription.class), TypeName.get(subscription.getEventType()))
+                    : subscriptionType;
 
             FieldSpec.Builder fieldBuilder = FieldSpec.builder(subscriptionType, name, Modifier.PRIVATE);
-            fieldBuilder.initializer("$L", generateAnonymousSubscription(subscriptionType, subscription));
+            fieldBuilder.initializer("$L", generateAnonymousSubscription(implementedType, subscription));
             classBuilder.addField(fieldBuilder.build());
         }
     }
@@ -139,6 +143,9 @@ public class SubscriptionGenerator {
         generateThreadMethod(builder, subscription);
         generateGetTargetMethod(builder);
         generateEqualsMethod(builder);
+        if (subscription.isConfigured()) {
+            generateConfigurationMethods(builder, subscription);
+        }
 
         return builder.build();
     }
@@ -203,6 +210,33 @@ public class SubscriptionGenerator {
         classBuilder.addMethod(methodBuilder.build());
     }
 
+    private void generateConfigurationMethods(TypeSpec.Builder classBuilder, SubscriptionMethod subscription) {
+        MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(PocketBusConst.METHOD_IS_CONFLATING)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(TypeName.BOOLEAN)
+                .addStatement("return $L", subscription.isConflating());
+        classBuilder.addMethod(methodBuilder.build());
+
+        methodBuilder = MethodSpec.methodBuilder(PocketBusConst.METHOD_GET_PRIORITY)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(TypeName.INT)
+                .addStatement("return $L", subscription.getPriority());
+        classBuilder.addMethod(methodBuilder.build());
+
+        methodBuilder = MethodSpec.methodBuilder(PocketBusConst.METHOD_GET_LANE)
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(String.class);
+        if (subscription.getLane() != null) {
+            methodBuilder.addStatement("return $S", subscription.getLane());
+        } else {
+            methodBuilder.addStatement("return null");
+        }
+        classBuilder.addMethod(methodBuilder.build());
+    }
+
     private TypeName getWeakReferenceType() {
         return ParameterizedTypeName.get(ClassName.get(WeakReference.class), TypeName.get(targetType));
     }
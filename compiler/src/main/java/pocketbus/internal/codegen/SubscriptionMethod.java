@@ -9,12 +9,18 @@ public class SubscriptionMethod {
     private final TypeMirror eventType;
     private final String name;
     private final ThreadMode threadMode;
+    private final boolean conflating;
+    private final int priority;
+    private final String lane;
     private int index;
 
-    public SubscriptionMethod(ExecutableElement executableElement, ThreadMode threadMode) {
+    public SubscriptionMethod(ExecutableElement executableElement, ThreadMode threadMode, boolean conflating, int priority, String lane) {
         this.name = executableElement.getSimpleName().toString();
         this.eventType = executableElement.getParameters().get(0).asType();
         this.threadMode = threadMode;
+        this.conflating = conflating;
+        this.priority = priority;
+        this.lane = lane.isEmpty() ? null : lane;
     }
 
     public String getName() {
@@ -29,6 +35,28 @@ public class SubscriptionMethod {
         return threadMode;
     }
 
+    public boolean isConflating() {
+        return conflating;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the lane of the subscription or null for none
+     */
+    public String getLane() {
+        return lane;
+    }
+
+    /**
+     * @return true if the subscription needs options beyond its ThreadMode
+     */
+    public boolean isConfigured() {
+        return conflating || priority != 0 || lane != null;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof SubscriptionMethod) {
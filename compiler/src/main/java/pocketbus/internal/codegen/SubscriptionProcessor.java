@@ -7,6 +7,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.RoundEnvironment;
@@ -21,12 +22,14 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 
 import pocketbus.Subscribe;
+import pocketbus.ThreadMode;
 import pocketbus.internal.PocketBusConst;
 
 import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.Diagnostic.Kind.WARNING;
 
 public class SubscriptionProcessor {
+    private static final Pattern LANE_NAME = Pattern.compile("[A-Za-z0-9_.\\-]+");
 
     private final Messager messager;
     private final Elements elements;
@@ -60,9 +63,11 @@ public class SubscriptionProcessor {
             validateMethod(executableElement);
             validateBindingPackage(element);
             validateVisibility(element);
+            validateLane(executableElement, subscribeAnnotation);
 
             SubscriptionGenerator generator = getOrCreateTargetClass(targetMap, enclosingElement);
-            SubscriptionMethod method = new SubscriptionMethod(executableElement, subscribeAnnotation.value());
+            SubscriptionMethod method = new SubscriptionMethod(executableElement, subscribeAnnotation.value(), subscribeAnnotation.conflate(),
+                    subscribeAnnotation.priority(), subscribeAnnotation.lane());
             if (!generator.addMethod(method)) {
                 error(String.format("@%s method cannot have multiple subscriptions for type %s on ThreadMode.%s (%s.%s)",
                         Subscribe.class.getSimpleName(), method.getEventType(), method.getThreadMode(), enclosingElement.getQualifiedName(),
@@ -132,6 +137,22 @@ public class SubscriptionProcessor {
         }
     }
 
+    private void validateLane(ExecutableElement element, Subscribe subscribeAnnotation) {
+        String lane = subscribeAnnotation.lane();
+        if (lane.isEmpty()) {
+            return;
+        }
+        TypeElement enclosingElement = (TypeElement) element.getEnclosingElement();
+        if (subscribeAnnotation.value() != ThreadMode.BACKGROUND) {
+            error(String.format("@%s lane can only be set on ThreadMode.BACKGROUND subscriptions (%s.%s)", Subscribe.class.getSimpleName(),
+                    enclosingElement.getQualifiedName(), element.getSimpleName()), element);
+        }
+        if (!LANE_NAME.matcher(lane).matches()) {
+            error(String.format("@%s lane \"%s\" must only contain letters, digits, '_', '-' and '.' (%s.%s)", Subscribe.class.getSimpleName(),
+                    lane, enclosingElement.getQualifiedName(), element.getSimpleName()), element);
+        }
+    }
+
     private SubscriptionGenerator getOrCreateTargetClass(LinkedHashMap<TypeElement, SubscriptionGenerator> targetMap, TypeElement element) {
         SubscriptionGenerator generator = targetMap.get(element);
         if (generator == null) {
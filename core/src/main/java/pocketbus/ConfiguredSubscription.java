@@ -0,0 +1,21 @@
+package pocketbus;
+
+/**
+ * A {@link Subscription} with delivery options beyond its ThreadMode, generated for {@link Subscribe} methods that set them
+ */
+public interface ConfiguredSubscription<T> extends Subscription<T> {
+    /**
+     * @return true if newer events replace a pending delivery to this subscription instead of being queued behind it
+     */
+    boolean isConflating();
+
+    /**
+     * @return the priority of this subscription, higher priorities receive an event first, 0 is the default
+     */
+    int getPriority();
+
+    /**
+     * @return the lane this ThreadMode.BACKGROUND subscription is run on, null for the shared background threads
+     */
+    String getLane();
+}
@@ -12,4 +12,22 @@ public @interface Subscribe {
      * ThreadMode the subscription is run on
      */
     ThreadMode value() default ThreadMode.CURRENT;
+
+    /**
+     * Only the latest event matters, while a delivery to this subscription is pending newer events replace the pending one
+     * instead of being queued behind it
+     */
+    boolean conflate() default false;
+
+    /**
+     * Subscriptions with a higher priority receive an event before those with a lower one, subscriptions with the same priority
+     * receive it in registration order
+     */
+    int priority() default 0;
+
+    /**
+     * Name of the lane a ThreadMode.BACKGROUND subscription is run on instead of the shared background threads.
+     * Every lane must be bound on the Bus.Builder, the default "" uses the background threads.
+     */
+    String lane() default "";
 }
@@ -14,6 +14,9 @@ public class PocketBusConst {
     public static final String METHOD_GET_TARGET = "getTarget";
     public static final String METHOD_EQUALS = "equals";
     public static final String METHOD_GET_REGISTRAR = "getRegistration";
+    public static final String METHOD_IS_CONFLATING = "isConflating";
+    public static final String METHOD_GET_PRIORITY = "getPriority";
+    public static final String METHOD_GET_LANE = "getLane";
 
     public static final String VAR_TARGET_REF = "targetRef";
     public static final String VAR_TARGET = "target";
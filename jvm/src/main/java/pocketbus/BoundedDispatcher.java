@@ -0,0 +1,283 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs deliveries on a fixed thread pool whose queue holds at most capacity deliveries, applying an {@link OverflowPolicy}
+ * when it is full so a fast poster cannot grow the heap without limit.
+ * <p>
+ * Like {@link PriorityDispatcher} the queue hands out the delivery with the highest {@link Dispatcher.Prioritized} priority
+ * first, and deliveries of the same priority in the order they were dispatched.
+ */
+final class BoundedDispatcher implements Dispatcher, RejectedExecutionHandler {
+    /**
+     * Told about every delivery that was dropped instead of run
+     */
+    interface RejectionListener {
+        void onRejected(@NonNull Runnable delivery);
+    }
+
+    @NonNull
+    private final ThreadPoolExecutor executor;
+    @NonNull
+    private final BoundedPriorityQueue queue;
+    /**
+     * Orders deliveries of the same priority
+     */
+    @NonNull
+    private final AtomicLong sequence = new AtomicLong();
+    private final int capacity;
+    @NonNull
+    private final OverflowPolicy overflowPolicy;
+    @NonNull
+    private final RejectionListener rejectionListener;
+    /**
+     * Set while the current thread is in {@link #tryDispatch(Runnable)}, which must not apply the OverflowPolicy
+     */
+    @NonNull
+    private final ThreadLocal<Boolean> trying = new ThreadLocal<>();
+
+    BoundedDispatcher(int threads, int capacity, @NonNull OverflowPolicy overflowPolicy, @NonNull RejectionListener rejectionListener) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.rejectionListener = rejectionListener;
+        this.queue = new BoundedPriorityQueue(capacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, Executors.defaultThreadFactory(), this);
+    }
+
+    @Override
+    public void dispatch(@NonNull Runnable delivery) {
+        executor.execute(prioritize(delivery));
+    }
+
+    @Override
+    public boolean tryDispatch(@NonNull Runnable delivery) {
+        trying.set(Boolean.TRUE);
+        try {
+            executor.execute(prioritize(delivery));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        } finally {
+            trying.remove();
+        }
+    }
+
+    @NonNull
+    private PrioritizedTask prioritize(@NonNull Runnable delivery) {
+        int priority = delivery instanceof Prioritized ? ((Prioritized) delivery).getPriority() : 0;
+        return new PrioritizedTask(delivery, priority, sequence.getAndIncrement());
+    }
+
+    /**
+     * @return the number of threads the pool runs deliveries on
+     */
+    int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * Called by the executor when every thread is busy and the queue is full
+     */
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (trying.get() != null) {
+            throw new RejectedExecutionException("ThreadMode.BACKGROUND queue is full (capacity " + capacity + ")");
+        }
+        PrioritizedTask prioritizedTask = (PrioritizedTask) task;
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(prioritizedTask);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejectionListener.onRejected(prioritizedTask.delivery);
+                }
+                break;
+            case DROP_NEWEST:
+                rejectionListener.onRejected(prioritizedTask.delivery);
+                break;
+            case DROP_OLDEST:
+                PrioritizedTask oldest = queue.pollOldest();
+                if (oldest != null) {
+                    rejectionListener.onRejected(oldest.delivery);
+                }
+                executor.execute(prioritizedTask);
+                break;
+            case FAIL_FAST:
+                rejectionListener.onRejected(prioritizedTask.delivery);
+                throw new RejectedExecutionException("ThreadMode.BACKGROUND queue is full (capacity " + capacity + ")");
+            default:
+                throw new IllegalStateException("Invalid OverflowPolicy: " + overflowPolicy);
+        }
+    }
+
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        @NonNull
+        final Runnable delivery;
+        private final int priority;
+        final long sequence;
+
+        PrioritizedTask(@NonNull Runnable delivery, int priority, long sequence) {
+            this.delivery = delivery;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            delivery.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * A PriorityBlockingQueue holding at most capacity tasks, each queued task holds one permit until it is taken
+     */
+    private static final class BoundedPriorityQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+        @NonNull
+        private final PriorityBlockingQueue<Runnable> tasks = new PriorityBlockingQueue<>();
+        @NonNull
+        private final Semaphore permits;
+
+        BoundedPriorityQueue(int capacity) {
+            this.permits = new Semaphore(capacity);
+        }
+
+        @Override
+        public boolean offer(@NonNull Runnable task) {
+            if (!permits.tryAcquire()) {
+                return false;
+            }
+            return tasks.offer(task);
+        }
+
+        @Override
+        public boolean offer(@NonNull Runnable task, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+            if (!permits.tryAcquire(timeout, unit)) {
+                return false;
+            }
+            return tasks.offer(task);
+        }
+
+        @Override
+        public void put(@NonNull Runnable task) throws InterruptedException {
+            permits.acquire();
+            tasks.offer(task);
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            Runnable task = tasks.take();
+            permits.release();
+            return task;
+        }
+
+        @Override
+        public Runnable poll() {
+            return released(tasks.poll());
+        }
+
+        @Override
+        public Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+            return released(tasks.poll(timeout, unit));
+        }
+
+        @Override
+        public Runnable peek() {
+            return tasks.peek();
+        }
+
+        @Override
+        public boolean remove(Object task) {
+            if (!tasks.remove(task)) {
+                return false;
+            }
+            permits.release();
+            return true;
+        }
+
+        @Override
+        public int drainTo(@NonNull Collection<? super Runnable> drained) {
+            return drainTo(drained, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(@NonNull Collection<? super Runnable> drained, int maxElements) {
+            int count = tasks.drainTo(drained, maxElements);
+            permits.release(count);
+            return count;
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return permits.availablePermits();
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+
+        /**
+         * Iterates over a snapshot, tasks are removed through {@link #remove(Object)} so their permit is released
+         */
+        @NonNull
+        @Override
+        public Iterator<Runnable> iterator() {
+            return Collections.unmodifiableCollection(tasks).iterator();
+        }
+
+        /**
+         * Removes the task that has waited longest whatever its priority, searching the whole queue
+         *
+         * @return null if the queue is empty
+         */
+        @Nullable
+        PrioritizedTask pollOldest() {
+            while (true) {
+                PrioritizedTask oldest = null;
+                for (Runnable task : tasks) {
+                    PrioritizedTask prioritizedTask = (PrioritizedTask) task;
+                    if (oldest == null || prioritizedTask.sequence < oldest.sequence) {
+                        oldest = prioritizedTask;
+                    }
+                }
+                // Retry if a thread took it in the meantime
+                if (oldest == null || remove(oldest)) {
+                    return oldest;
+                }
+            }
+        }
+
+        @Nullable
+        private Runnable released(@Nullable Runnable task) {
+            if (task != null) {
+                permits.release();
+            }
+            return task;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Queues deliveries and drains them from a single task on the Scheduler, running deliveries until the queue is empty or the time
+ * budget of the turn is used up. Leftover deliveries are drained by a new task so other work on the thread, such as input and
+ * drawing on the Android main thread, can run in between.
+ */
+final class BudgetedDispatcher implements Dispatcher, Runnable {
+    @NonNull
+    private final Scheduler scheduler;
+    private final long budgetNanos;
+    @NonNull
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * True while a drain task is scheduled or running
+     */
+    @NonNull
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    BudgetedDispatcher(@NonNull Scheduler scheduler, long budgetNanos) {
+        this.scheduler = scheduler;
+        this.budgetNanos = budgetNanos;
+    }
+
+    @Override
+    public void dispatch(@NonNull Runnable delivery) {
+        queue.offer(delivery);
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.scheduleDirect(this);
+        }
+    }
+
+    @Override
+    public boolean tryDispatch(@NonNull Runnable delivery) {
+        dispatch(delivery);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + budgetNanos;
+        try {
+            Runnable delivery;
+            while ((delivery = queue.poll()) != null) {
+                delivery.run();
+                if (System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // A delivery queued after the last poll saw scheduled as true and relies on this check
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                scheduler.scheduleDirect(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,1646 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import pocketbus.internal.Registry;
+
+public class Bus {
+    private static final String TAG = "PocketBus";
+    private static final Object DEFAULT_LOCK = new Object();
+
+    private static Bus defaultBus;
+    private static boolean debug = false;
+
+    @NonNull
+    private final Dispatcher mainDispatcher;
+    @NonNull
+    private final Dispatcher currentDispatcher;
+    @NonNull
+    private final Dispatcher backgroundDispatcher;
+    /**
+     * True when ThreadMode.CURRENT uses Schedulers.trampoline(), which runs work immediately on the posting thread.
+     * Those deliveries call the subscriptions directly instead of going through Rx.
+     */
+    private final boolean deliverCurrentDirectly;
+    /**
+     * True when every BACKGROUND subscription receives its events one at a time in the order posted
+     */
+    private final boolean orderedBackground;
+    /**
+     * BACKGROUND deliveries to more subscriptions than this are split into tasks of at most this many subscriptions
+     */
+    private final int backgroundFanOutChunkSize;
+    /**
+     * The dispatchers of the lanes bound on the Builder, by lane name
+     */
+    @NonNull
+    private final Map<String, Dispatcher> laneDispatchers;
+
+    @NonNull
+    private volatile ListenerIndex listenerIndex = ListenerIndex.EMPTY;
+    /**
+     * Registered targets are tracked weakly, once collected their reference is enqueued so exactly their subscriptions can be removed
+     */
+    @NonNull
+    private final ReferenceQueue<Object> collectedTargets = new ReferenceQueue<>();
+    @NonNull
+    private final Map<Object, TargetReference> targetReferences = new WeakHashMap<>();
+
+    @NonNull
+    private final ReplayCache stickyEvents;
+    @NonNull
+    private final BusMetrics metrics;
+    /**
+     * False for BusMetrics.NONE so the hot paths skip reading the clock and counting pending tasks
+     */
+    private final boolean metricsEnabled;
+    @Nullable
+    private final SlowHandlerListener slowHandlerListener;
+    /**
+     * Handlers running longer than this are reported to the slowHandlerListener, indexed by ThreadMode.ordinal()
+     */
+    @NonNull
+    private final long[] slowHandlerThresholdNanos;
+    /**
+     * True when handle() calls are timed, for metrics or slow handler detection
+     */
+    private final boolean timeHandlers;
+    /**
+     * Scheduled but not yet started delivery tasks, indexed by ThreadMode.ordinal(), only counted when metricsEnabled
+     */
+    @NonNull
+    private final AtomicInteger[] pendingTasks;
+    /**
+     * Guards writes to listenerIndex, posting reads the current index without it
+     */
+    @NonNull
+    private final Object listenerLock = new Object();
+    @Nullable
+    private Registry registry = null;
+
+    private Bus(@NonNull Builder builder, @NonNull Scheduler mainScheduler, @NonNull Scheduler currentScheduler,
+                @Nullable Scheduler backgroundScheduler) {
+        this.mainDispatcher = builder.mainDrainBudgetNanos > 0 ? new BudgetedDispatcher(mainScheduler, builder.mainDrainBudgetNanos)
+                : new Dispatcher.SchedulerDispatcher(mainScheduler);
+        this.currentDispatcher = new Dispatcher.SchedulerDispatcher(currentScheduler);
+        ExecutorService virtualThreadExecutor = backgroundScheduler == null && builder.virtualThreadConcurrency > 0
+                ? Platform.get().virtualThreadExecutor() : null;
+        if (backgroundScheduler != null) {
+            this.backgroundDispatcher = new Dispatcher.SchedulerDispatcher(backgroundScheduler);
+        } else if (virtualThreadExecutor != null) {
+            this.backgroundDispatcher = new VirtualThreadDispatcher(virtualThreadExecutor, builder.virtualThreadConcurrency);
+        } else if (builder.ringBufferCapacity > 0) {
+            this.backgroundDispatcher = new RingBufferDispatcher(builder.backgroundThreadPoolSize, builder.ringBufferCapacity,
+                    builder.ringBufferWaitStrategy);
+        } else if (builder.backgroundQueueCapacity == Integer.MAX_VALUE) {
+            this.backgroundDispatcher = builder.adaptiveTargetWaitNanos > 0 ? new PriorityDispatcher(builder.adaptiveMinThreads,
+                    builder.adaptiveMaxThreads, builder.adaptiveTargetWaitNanos) : new PriorityDispatcher(builder.backgroundThreadPoolSize);
+        } else {
+            this.backgroundDispatcher = new BoundedDispatcher(builder.backgroundThreadPoolSize, builder.backgroundQueueCapacity,
+                    builder.backgroundOverflowPolicy, new BoundedDispatcher.RejectionListener() {
+                        @Override
+                        public void onRejected(@NonNull Runnable delivery) {
+                            taskRejected(ThreadMode.BACKGROUND, delivery);
+                        }
+                    });
+        }
+        this.stickyEvents = new ReplayCache(builder.replayDepth, builder.replayTimeToLiveNanos, builder.replayMaxEntries);
+        this.metrics = builder.metrics;
+        this.deliverCurrentDirectly = currentScheduler == Schedulers.trampoline();
+        this.orderedBackground = builder.orderedBackground;
+        this.backgroundFanOutChunkSize = builder.backgroundFanOutChunkSize;
+        this.laneDispatchers = new HashMap<>();
+        for (Map.Entry<String, Scheduler> lane : builder.laneSchedulers.entrySet()) {
+            laneDispatchers.put(lane.getKey(), new Dispatcher.SchedulerDispatcher(lane.getValue()));
+        }
+        for (Map.Entry<String, Integer> lane : builder.laneThreadPoolSizes.entrySet()) {
+            laneDispatchers.put(lane.getKey(), new PriorityDispatcher(lane.getValue()));
+        }
+        this.metricsEnabled = metrics != BusMetrics.NONE;
+        this.slowHandlerListener = builder.slowHandlerListener;
+        this.slowHandlerThresholdNanos = builder.slowHandlerThresholdNanos.clone();
+        this.timeHandlers = metricsEnabled || slowHandlerListener != null;
+        this.pendingTasks = new AtomicInteger[ThreadMode.values().length];
+        for (int i = 0; i < pendingTasks.length; i++) {
+            pendingTasks[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @return the default bus instance
+     */
+    @NonNull
+    public static Bus getDefault() {
+        synchronized (DEFAULT_LOCK) {
+            if (defaultBus == null) {
+                defaultBus = new Builder().build();
+            }
+            return defaultBus;
+        }
+    }
+
+    /**
+     * Sets the default bus instance
+     *
+     * @param bus
+     */
+    public synchronized static void setDefault(@NonNull Bus bus) {
+        synchronized (DEFAULT_LOCK) {
+            defaultBus = bus;
+        }
+    }
+
+    /**
+     * Enable or disable debug logging
+     *
+     * @param enable enable/disable debug logging
+     */
+    public static void setDebug(boolean enable) {
+        debug = enable;
+    }
+
+    /**
+     * @return the number of threads ThreadMode.BACKGROUND deliveries currently run on, which changes over time for an adaptive pool,
+     * or 0 if ThreadMode.BACKGROUND runs on a BackgroundScheduler set on the Builder or on virtual threads
+     * @see Builder#setAdaptiveBackgroundPool(int, int, long, TimeUnit)
+     */
+    public int getBackgroundThreadPoolSize() {
+        if (backgroundDispatcher instanceof PriorityDispatcher) {
+            return ((PriorityDispatcher) backgroundDispatcher).getPoolSize();
+        }
+        if (backgroundDispatcher instanceof BoundedDispatcher) {
+            return ((BoundedDispatcher) backgroundDispatcher).getPoolSize();
+        }
+        if (backgroundDispatcher instanceof RingBufferDispatcher) {
+            return ((RingBufferDispatcher) backgroundDispatcher).getPoolSize();
+        }
+        return 0;
+    }
+
+    /**
+     * Set the registry for registering subscriptions
+     *
+     * @param registry the registry of subscriptions
+     */
+    public void setRegistry(@Nullable Registry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Register a target that has subscribe annotations.
+     *
+     * @param target the target that has subscribe annotations
+     * @return a handle that unregisters exactly the subscriptions registered by this call
+     * @throws IllegalArgumentException if the target has no entry in the registry
+     */
+    @NonNull
+    public <T> Registration register(@NonNull T target) {
+        SubscriptionRegistration subscriptionRegistration = null;
+        if (registry != null) {
+            subscriptionRegistration = registry.getRegistration(target);
+        }
+        if (subscriptionRegistration != null) {
+            return register(subscriptionRegistration);
+        } else {
+            throw new IllegalArgumentException("Register failed to find subscriptionRegistration for " + target.getClass() + " please check your registry");
+        }
+    }
+
+    /**
+     * Register a single subscription with the bus
+     *
+     * @param subscription the subscription to register
+     * @return a handle that unregisters this subscription
+     * @throws NullPointerException if one of the subscription.getEventClass() returns null
+     */
+    @NonNull
+    public <T> Registration register(@NonNull Subscription<? super T> subscription) {
+        return register(subscription, true);
+    }
+
+    /**
+     * Registers a list of subscriptions from the subscriptionRegistration
+     *
+     * @param subscriptionRegistration the registration to register
+     * @return a handle that unregisters exactly these subscriptions
+     * @throws NullPointerException if subscription.getEventClass() returns null
+     */
+    @NonNull
+    protected Registration register(@NonNull SubscriptionRegistration subscriptionRegistration) {
+        List<Subscription<?>> subscriptions = subscriptionRegistration.getSubscriptions();
+        for (Subscription subscription : subscriptions) {
+            checkEventClass(subscription);
+        }
+        subscriptions = wrap(subscriptions);
+        removeCollectedTargets();
+        Registration registration;
+        synchronized (listenerLock) {
+            listenerIndex = listenerIndex.plus(subscriptions);
+            registration = track(subscriptions);
+        }
+        if (debug) {
+            for (Subscription subscription : subscriptions) {
+                log("Registered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+            }
+        }
+        for (Subscription subscription : subscriptions) {
+            postStickyOnRegistration(subscription);
+        }
+        return registration;
+    }
+
+    @NonNull
+    protected <T> Registration register(@NonNull Subscription<? super T> subscription, boolean postStickyEvents) {
+        checkEventClass(subscription);
+        List<Subscription<?>> subscriptions = wrap(Collections.singletonList(subscription));
+        removeCollectedTargets();
+        Registration registration;
+        synchronized (listenerLock) {
+            listenerIndex = listenerIndex.plus(subscriptions);
+            registration = track(subscriptions);
+        }
+        if (debug) {
+            log("Registered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+        }
+        if (postStickyEvents) {
+            Subscription registered = subscriptions.get(0);
+            postStickyOnRegistration(registered);
+        }
+        return registration;
+    }
+
+    /**
+     * Wraps the subscriptions the bus keeps delivery state for
+     *
+     * @throws IllegalArgumentException if a subscription is on a lane that is not bound or not on ThreadMode.BACKGROUND
+     */
+    @NonNull
+    private List<Subscription<?>> wrap(@NonNull List<? extends Subscription<?>> subscriptions) {
+        for (Subscription<?> subscription : subscriptions) {
+            String lane = ListenerIndex.laneOf(subscription);
+            if (lane == null) {
+                continue;
+            }
+            if (subscription.getThreadMode() != ThreadMode.BACKGROUND) {
+                throw new IllegalArgumentException("Lane \"" + lane + "\" can only be used on ThreadMode.BACKGROUND, not ThreadMode."
+                        + subscription.getThreadMode());
+            }
+            if (!laneDispatchers.containsKey(lane)) {
+                throw new IllegalArgumentException("Lane \"" + lane + "\" is not bound, bind it with Bus.Builder.setLaneScheduler "
+                        + "or Bus.Builder.setLaneThreadPoolSize");
+            }
+        }
+        List<Subscription<?>> wrapped = ConflatedSubscription.wrap(subscriptions);
+        return orderedBackground ? OrderedSubscription.wrap(wrapped) : wrapped;
+    }
+
+    /**
+     * Unregister a single subscription with the bus
+     *
+     * @param subscription the subscription to unregister
+     * @throws NullPointerException if subscription.getEventClass() returns null
+     */
+    protected <T> void unregister(@NonNull Subscription<? super T> subscription) {
+        checkEventClass(subscription);
+        removeCollectedTargets();
+        synchronized (listenerLock) {
+            List<Subscription<? super T>> subscriptions = Collections.<Subscription<? super T>>singletonList(subscription);
+            listenerIndex = listenerIndex.minus(subscriptions);
+            untrack(subscriptions);
+        }
+        if (debug) {
+            log("Unregistered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+        }
+    }
+
+    /**
+     * Unregister a target that has subscribe annotations.
+     *
+     * @param target the target that has subscribe annotations
+     * @throws IllegalArgumentException if the target is not registered and has no entry in the registry
+     */
+    public <T> void unregister(@NonNull T target) {
+        removeCollectedTargets();
+        List<Subscription> subscriptions = null;
+        synchronized (listenerLock) {
+            TargetReference reference = targetReferences.remove(target);
+            if (reference != null) {
+                subscriptions = new ArrayList<>();
+                for (Registration registration : reference.registrations) {
+                    if (registration.registered) {
+                        registration.registered = false;
+                        subscriptions.addAll(registration.subscriptions);
+                    }
+                }
+                reference.clear();
+                listenerIndex = listenerIndex.without(subscriptions);
+            }
+        }
+        if (subscriptions != null) {
+            if (debug) {
+                for (Subscription subscription : subscriptions) {
+                    log("Unregistered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+                }
+            }
+            return;
+        }
+
+        SubscriptionRegistration subscriptionRegistration = null;
+        if (registry != null) {
+            subscriptionRegistration = registry.getRegistration(target);
+        }
+        if (subscriptionRegistration != null) {
+            unregister(subscriptionRegistration);
+        } else {
+            throw new IllegalArgumentException("Unregister failed to find subscriptionRegistration for " + target.getClass() + " please check your registry");
+        }
+    }
+
+    /**
+     * Unregister the subscriptions registered by the call that returned the registration.
+     * Does nothing if they have already been unregistered.
+     * <p>
+     * Skips the registry lookup and subscription comparisons of {@link #unregister(Object)}, but still builds a new
+     * copy-on-write index, costing O(event classes + subscriptions per type) so that posting never locks.
+     *
+     * @param registration the handle returned when registering
+     */
+    public void unregister(@NonNull Registration registration) {
+        removeCollectedTargets();
+        synchronized (listenerLock) {
+            if (!registration.registered) {
+                return;
+            }
+            registration.registered = false;
+            listenerIndex = listenerIndex.without(registration.subscriptions);
+            if (debug) {
+                for (Subscription subscription : registration.subscriptions) {
+                    log("Unregistered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the registration unregistered once none of its subscriptions is left in the index, however they were removed
+     *
+     * @return whether any subscription of the registration is still registered
+     */
+    boolean isRegistered(@NonNull Registration registration) {
+        removeCollectedTargets();
+        synchronized (listenerLock) {
+            if (!registration.registered) {
+                return false;
+            }
+            for (Subscription subscription : registration.subscriptions) {
+                if (listenerIndex.contains(subscription)) {
+                    return true;
+                }
+            }
+            registration.registered = false;
+            return false;
+        }
+    }
+
+    /**
+     * Unregisters a list of subscriptions from the subscriptionRegistration
+     *
+     * @param subscriptionRegistration the registration to unregister
+     * @throws NullPointerException if subscription.getEventClass() returns null
+     */
+    protected void unregister(@NonNull SubscriptionRegistration subscriptionRegistration) {
+        List<Subscription<?>> subscriptions = subscriptionRegistration.getSubscriptions();
+        for (Subscription subscription : subscriptions) {
+            checkEventClass(subscription);
+        }
+        removeCollectedTargets();
+        synchronized (listenerLock) {
+            listenerIndex = listenerIndex.minus(subscriptions);
+            untrack(subscriptions);
+        }
+        if (debug) {
+            for (Subscription subscription : subscriptions) {
+                log("Unregistered subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+            }
+        }
+    }
+
+    private static void checkEventClass(@NonNull Subscription subscription) {
+        if (subscription.getEventClass() == null) {
+            throw new NullPointerException("Subscription.getEventClass() cannot be null");
+        }
+    }
+
+    /**
+     * Creates the registration for newly registered subscriptions and tracks it under the targets of the subscriptions.
+     * Must be called while holding the listenerLock.
+     */
+    @NonNull
+    private Registration track(@NonNull List<? extends Subscription> subscriptions) {
+        Registration registration = new Registration(this, subscriptions);
+        TargetReference reference = null;
+        for (Subscription subscription : subscriptions) {
+            Object target = subscription.getTarget();
+            if (target == null || (reference != null && reference.get() == target)) {
+                continue;
+            }
+            reference = targetReferences.get(target);
+            if (reference == null) {
+                reference = new TargetReference(target, collectedTargets);
+                targetReferences.put(target, reference);
+            }
+            Iterator<Registration> iterator = reference.registrations.iterator();
+            while (iterator.hasNext()) {
+                if (!iterator.next().registered) {
+                    iterator.remove();
+                }
+            }
+            reference.registrations.add(registration);
+        }
+        return registration;
+    }
+
+    /**
+     * Drops the subscriptions matching those being unregistered from the tracked registrations of their targets,
+     * the same subscriptions ListenerIndex.minus removes.
+     * Must be called while holding the listenerLock.
+     */
+    private void untrack(@NonNull List<? extends Subscription> subscriptions) {
+        for (Subscription subscription : subscriptions) {
+            Object target = subscription.getTarget();
+            TargetReference reference = target != null ? targetReferences.get(target) : null;
+            if (reference == null) {
+                continue;
+            }
+            for (Registration registration : reference.registrations) {
+                Iterator<Subscription> iterator = registration.subscriptions.iterator();
+                while (iterator.hasNext()) {
+                    Subscription tracked = iterator.next();
+                    if (tracked.getEventClass() == subscription.getEventClass() && tracked.getThreadMode() == subscription.getThreadMode()) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the subscriptions of every target that has been collected since the last call
+     */
+    private void removeCollectedTargets() {
+        Reference<?> reference = collectedTargets.poll();
+        if (reference == null) {
+            return;
+        }
+        List<Subscription> collected = new ArrayList<>();
+        synchronized (listenerLock) {
+            do {
+                for (Registration registration : ((TargetReference) reference).registrations) {
+                    if (registration.registered) {
+                        registration.registered = false;
+                        collected.addAll(registration.subscriptions);
+                    }
+                }
+                reference = collectedTargets.poll();
+            } while (reference != null);
+            if (!collected.isEmpty()) {
+                listenerIndex = listenerIndex.without(collected);
+            }
+        }
+        if (metricsEnabled && !collected.isEmpty()) {
+            metrics.onSubscriptionsReaped(collected.size());
+        }
+        if (debug) {
+            log("Removed " + collected.size() + " subscriptions of collected targets");
+        }
+    }
+
+    /**
+     * Removes a subscription whose handle reported its target is gone
+     */
+    private void removeSubscription(@NonNull Subscription subscription) {
+        synchronized (listenerLock) {
+            listenerIndex = listenerIndex.without(Collections.singletonList(subscription));
+        }
+        if (metricsEnabled) {
+            metrics.onSubscriptionsReaped(1);
+        }
+        if (debug) {
+            log("Removed subscription for " + subscription.getEventClass() + " on ThreadMode." + subscription.getThreadMode());
+        }
+    }
+
+    /**
+     * Deliver the event to all registered subscriptions for this event type including super classes
+     * Note a subscription that takes Object will receive all events.
+     *
+     * @param event the event to deliver to subscriptions
+     */
+    public <T> void post(T event) {
+        if (event == null) {
+            throw new NullPointerException("Event cannot be null");
+        }
+        removeCollectedTargets();
+        ListenerIndex.ResolvedListeners resolved = listenerIndex.resolve(event.getClass());
+        if (metricsEnabled) {
+            metrics.onPost(event.getClass(), resolved.size);
+        }
+        postToMatched(event, resolved, ThreadMode.CURRENT);
+        postToMatched(event, resolved, ThreadMode.MAIN);
+        postToMatched(event, resolved, ThreadMode.BACKGROUND);
+    }
+
+    /**
+     * Deliver each event to all registered subscriptions for its type, in the order given.
+     * The subscriptions of the whole batch are resolved against a single snapshot of the registered subscriptions and each ThreadMode
+     * receives one scheduled task delivering the batch in order.
+     *
+     * @param events the events to deliver to subscriptions
+     * @throws NullPointerException if any of the events is null, in which case none are posted
+     */
+    public void postAll(@NonNull Collection<?> events) {
+        Object[] eventArray = events.toArray();
+        for (Object event : eventArray) {
+            if (event == null) {
+                throw new NullPointerException("Event cannot be null");
+            }
+        }
+        if (eventArray.length == 0) {
+            return;
+        }
+
+        removeCollectedTargets();
+        ListenerIndex index = listenerIndex;
+        Subscription[][] current = new Subscription[eventArray.length][];
+        Subscription[][] main = new Subscription[eventArray.length][];
+        Subscription[][] background = new Subscription[eventArray.length][];
+        ListenerIndex.ResolvedListeners[] resolvedEvents = new ListenerIndex.ResolvedListeners[eventArray.length];
+        for (int i = 0; i < eventArray.length; i++) {
+            ListenerIndex.ResolvedListeners resolved = index.resolve(eventArray[i].getClass());
+            if (metricsEnabled) {
+                metrics.onPost(eventArray[i].getClass(), resolved.size);
+            }
+            resolvedEvents[i] = resolved;
+            // Direct CURRENT deliveries include the conflating subscriptions in their priority order
+            current[i] = deliverCurrentDirectly ? resolved.allCurrent : resolved.current;
+            main[i] = resolved.main;
+            background[i] = resolved.background;
+        }
+        postAll(eventArray, current, resolvedEvents, ThreadMode.CURRENT);
+        postAll(eventArray, main, resolvedEvents, ThreadMode.MAIN);
+        postAll(eventArray, background, resolvedEvents, ThreadMode.BACKGROUND);
+        for (int i = 0; i < eventArray.length; i++) {
+            // Lanes have their own dispatchers so their events are not part of the BACKGROUND batch
+            postToLanes(eventArray[i], resolvedEvents[i]);
+        }
+    }
+
+    /**
+     * Deliver each event to all registered subscriptions for its type, in the order given.
+     *
+     * @param events the events to deliver to subscriptions
+     * @throws NullPointerException if any of the events is null, in which case none are posted
+     * @see #postAll(Collection)
+     */
+    public void postAll(@NonNull Object... events) {
+        postAll(Arrays.asList(events));
+    }
+
+    /**
+     * Posts the batch to the subscriptions of threadMode, scheduling the deliveries to conflating subscriptions of a higher priority
+     * than the batch before it and the others after it
+     */
+    private void postAll(@NonNull Object[] events, @NonNull Subscription[][] subscriptions,
+                         @NonNull ListenerIndex.ResolvedListeners[] resolvedEvents, @NonNull ThreadMode threadMode) {
+        if (threadMode == ThreadMode.CURRENT && deliverCurrentDirectly) {
+            postAll(events, subscriptions, threadMode);
+            return;
+        }
+        int batchPriority = batchPriority(subscriptions);
+        for (int i = 0; i < events.length; i++) {
+            for (ConflatedSubscription subscription : resolvedEvents[i].getConflated(threadMode)) {
+                if (ListenerIndex.priorityOf(subscription) > batchPriority) {
+                    postConflated(events[i], subscription, threadMode);
+                }
+            }
+        }
+        postAll(events, subscriptions, threadMode);
+        for (int i = 0; i < events.length; i++) {
+            for (ConflatedSubscription subscription : resolvedEvents[i].getConflated(threadMode)) {
+                if (ListenerIndex.priorityOf(subscription) <= batchPriority) {
+                    postConflated(events[i], subscription, threadMode);
+                }
+            }
+        }
+    }
+
+    private void postAll(@NonNull Object[] events, @NonNull Subscription[][] subscriptions, @NonNull ThreadMode threadMode) {
+        int deliveryCount = 0;
+        for (Subscription[] eventSubscriptions : subscriptions) {
+            if (eventSubscriptions.length > 0) {
+                deliveryCount++;
+            }
+        }
+        if (deliveryCount == 0) {
+            return;
+        }
+        if (threadMode == ThreadMode.CURRENT && deliverCurrentDirectly) {
+            performPostAll(events, subscriptions, threadMode);
+        } else if (threadMode == ThreadMode.BACKGROUND && orderedBackground) {
+            for (int i = 0; i < events.length; i++) {
+                postOrdered(events[i], subscriptions[i]);
+            }
+        } else if (threadMode == ThreadMode.BACKGROUND && backgroundFanOutChunkSize != Integer.MAX_VALUE) {
+            postAllInChunks(events, subscriptions);
+        } else {
+            schedule(threadMode, new BatchDelivery(events, subscriptions, threadMode));
+        }
+        if (debug) {
+            log(deliveryCount + " Events posted in a batch on ThreadMode." + threadMode);
+        }
+    }
+
+    /**
+     * Schedules the ThreadMode.BACKGROUND deliveries of the batch, in order, as tasks of at most backgroundFanOutChunkSize deliveries
+     */
+    private void postAllInChunks(@NonNull Object[] events, @NonNull Subscription[][] subscriptions) {
+        List<Object> chunkEvents = new ArrayList<>();
+        List<Subscription[]> chunkSubscriptions = new ArrayList<>();
+        int chunkDeliveries = 0;
+        for (int i = 0; i < events.length; i++) {
+            Subscription[] eventSubscriptions = subscriptions[i];
+            int from = 0;
+            while (from < eventSubscriptions.length) {
+                int to = Math.min(eventSubscriptions.length, from + backgroundFanOutChunkSize - chunkDeliveries);
+                chunkEvents.add(events[i]);
+                chunkSubscriptions.add(from == 0 && to == eventSubscriptions.length
+                        ? eventSubscriptions : Arrays.copyOfRange(eventSubscriptions, from, to));
+                chunkDeliveries += to - from;
+                from = to;
+                if (chunkDeliveries == backgroundFanOutChunkSize) {
+                    scheduleChunk(chunkEvents, chunkSubscriptions);
+                    chunkDeliveries = 0;
+                }
+            }
+        }
+        if (chunkDeliveries > 0) {
+            scheduleChunk(chunkEvents, chunkSubscriptions);
+        }
+    }
+
+    private void scheduleChunk(@NonNull List<Object> events, @NonNull List<Subscription[]> subscriptions) {
+        schedule(ThreadMode.BACKGROUND, new BatchDelivery(events.toArray(), subscriptions.toArray(new Subscription[subscriptions.size()][]),
+                ThreadMode.BACKGROUND));
+        events.clear();
+        subscriptions.clear();
+    }
+
+    private <T> void postToMatched(@NonNull T event, @NonNull ListenerIndex.ResolvedListeners resolved, @NonNull ThreadMode threadMode) {
+        Subscription[] subscriptions = resolved.getAll(threadMode);
+        if (subscriptions.length > 0) {
+            if (resolved.getConflated(threadMode).length == 0) {
+                post(event, subscriptions, threadMode);
+            } else if (threadMode == ThreadMode.CURRENT && deliverCurrentDirectly) {
+                // Delivered before post returns, nothing is ever pending for the conflating subscriptions
+                performPost(event, subscriptions, threadMode);
+            } else {
+                postInPriorityOrder(event, subscriptions, threadMode);
+            }
+            if (debug) {
+                log("Event<" + event.getClass() + "> posted to " + subscriptions.length + " Subscriptions on ThreadMode." + threadMode);
+            }
+        }
+        if (threadMode == ThreadMode.BACKGROUND) {
+            postToLanes(event, resolved);
+        }
+    }
+
+    /**
+     * Schedules the deliveries of event in the priority order of subscriptions. Every conflating subscription gets a delivery of its
+     * own and each run of other subscriptions between them shares one.
+     */
+    private void postInPriorityOrder(@NonNull Object event, @NonNull Subscription[] subscriptions, @NonNull ThreadMode threadMode) {
+        int runStart = 0;
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] instanceof ConflatedSubscription) {
+                if (i > runStart) {
+                    post(event, Arrays.copyOfRange(subscriptions, runStart, i), threadMode);
+                }
+                postConflated(event, (ConflatedSubscription) subscriptions[i], threadMode);
+                runStart = i + 1;
+            }
+        }
+        if (runStart < subscriptions.length) {
+            post(event, Arrays.copyOfRange(subscriptions, runStart, subscriptions.length), threadMode);
+        }
+    }
+
+    private void postToLanes(@NonNull Object event, @NonNull ListenerIndex.ResolvedListeners resolved) {
+        for (int i = 0; i < resolved.lanes.length; i++) {
+            post(event, resolved.laneSubscriptions[i], ThreadMode.BACKGROUND, laneDispatchers.get(resolved.lanes[i]));
+            if (debug) {
+                log("Event<" + event.getClass() + "> posted to " + resolved.laneSubscriptions[i].length + " Subscriptions on lane "
+                        + resolved.lanes[i]);
+            }
+        }
+    }
+
+    /**
+     * Schedules a delivery for the conflating subscription if it has none pending, otherwise event replaces the pending one
+     */
+    private void postConflated(@NonNull Object event, @NonNull ConflatedSubscription subscription, @NonNull ThreadMode threadMode) {
+        if (threadMode == ThreadMode.CURRENT && deliverCurrentDirectly) {
+            // Delivered before post returns, nothing is ever pending
+            performPost(event, subscription, threadMode);
+        } else if (subscription.offer(event)) {
+            schedule(threadMode, getDispatcher(subscription), new ConflatedDelivery(subscription, threadMode));
+        } else if (metricsEnabled) {
+            metrics.onConflated(subscription.subscription, threadMode);
+        }
+    }
+
+    /**
+     * @deprecated This should never be used random acts of terror. Use a singleton class and check its state.
+     *
+     * Similar to {@code post} but the event is saved and delivered to subscriptions of matching types when they are registered.
+     * The last {@link Builder#setReplayDepth(int)} events of each type are saved and delivered in the order they were posted,
+     * subject to {@link Builder#setReplayTimeToLive(long, TimeUnit)} and {@link Builder#setReplayMaxEntries(int)}.
+     *
+     * @param event the event to post and save to be delivered on registration
+     */
+    @Deprecated
+    public <T> void postSticky(T event) {
+        if (event == null) {
+            throw new NullPointerException("Event cannot be null");
+        }
+        stickyEvents.put(event);
+        post(event);
+    }
+
+    /**
+     * @deprecated  This should never by used see {@code postSticky}
+     *
+     * Remove the Sticky events of type eventClass
+     *
+     * @param eventClass the eventClass type to remove from the sticky store
+     * @return true if sticky events were removed
+     */
+    @Deprecated
+    public <T> boolean removeSticky(@NonNull Class<T> eventClass) {
+        return stickyEvents.remove(eventClass);
+    }
+
+    /**
+     * @deprecated  This should never by used see {@code postSticky}
+
+     * Return the most recent sticky event of type eventClass if it exists in the sticky store otherwise return null
+     *
+     * @param eventClass
+     * @return the sticky event of type eventClass if found in the sticky store null otherwise
+     */
+    @Nullable
+    @Deprecated
+    public <T> T getSticky(@NonNull Class<T> eventClass) {
+        //noinspection unchecked
+        return (T) stickyEvents.get(eventClass);
+    }
+
+    /**
+     * Used to post sticky events to a newly registered listener
+     */
+    @Deprecated
+    private <T> void postStickyOnRegistration(@NonNull Subscription<? super T> subscription) {
+        Class<? super T> eventClass = subscription.getEventClass(); // This check is handled by register.
+        ThreadMode threadMode = subscription.getThreadMode();
+        for (Object stickyEvent : stickyEvents.getAssignableTo(eventClass)) {
+            post(stickyEvent, new Subscription[]{subscription}, threadMode, getDispatcher(subscription));
+            if (debug) {
+                log("Sticky Event<" + stickyEvent.getClass() + "> posted to Subscription<" + eventClass + "> on ThreadMode." + threadMode);
+            }
+        }
+    }
+
+    private <T> void post(@NonNull T event, @NonNull Subscription[] subscriptions, @NonNull ThreadMode threadMode) {
+        post(event, subscriptions, threadMode, getDispatcher(threadMode));
+    }
+
+    private <T> void post(@NonNull T event, @NonNull Subscription[] subscriptions, @NonNull ThreadMode threadMode,
+                          @NonNull Dispatcher dispatcher) {
+        if (threadMode == ThreadMode.CURRENT && deliverCurrentDirectly) {
+            // The trampoline gives every subscribeOn its own worker so nested posts already ran depth first, calling directly keeps that order
+            performPost(event, subscriptions, threadMode);
+            return;
+        }
+        if (threadMode == ThreadMode.BACKGROUND && orderedBackground) {
+            postOrdered(event, subscriptions);
+            return;
+        }
+        if (threadMode == ThreadMode.BACKGROUND && subscriptions.length > backgroundFanOutChunkSize) {
+            // Every chunk is its own task so idle background threads pick up the rest of a large fan-out
+            for (int from = 0; from < subscriptions.length; from += backgroundFanOutChunkSize) {
+                int to = Math.min(subscriptions.length, from + backgroundFanOutChunkSize);
+                schedule(threadMode, dispatcher, new Delivery(event, Arrays.copyOfRange(subscriptions, from, to), threadMode));
+            }
+            return;
+        }
+        schedule(threadMode, dispatcher, new Delivery(event, subscriptions, threadMode));
+    }
+
+    /**
+     * Adds event to the mailbox of every subscription, scheduling a task for the mailboxes that were empty.
+     * Conflating subscriptions have no mailbox, they are delivered to like without ordered delivery.
+     */
+    private void postOrdered(@NonNull Object event, @NonNull Subscription[] subscriptions) {
+        for (Subscription subscription : subscriptions) {
+            if (!(subscription instanceof OrderedSubscription)) {
+                schedule(ThreadMode.BACKGROUND, getDispatcher(subscription),
+                        new Delivery(event, new Subscription[]{subscription}, ThreadMode.BACKGROUND));
+                continue;
+            }
+            OrderedSubscription orderedSubscription = (OrderedSubscription) subscription;
+            if (orderedSubscription.offer(event)) {
+                schedule(ThreadMode.BACKGROUND, getDispatcher(orderedSubscription), new OrderedDelivery(orderedSubscription));
+            }
+        }
+    }
+
+    private void schedule(@NonNull ThreadMode threadMode, @NonNull Runnable delivery) {
+        schedule(threadMode, getDispatcher(threadMode), delivery);
+    }
+
+    private void schedule(@NonNull ThreadMode threadMode, @NonNull Dispatcher dispatcher, @NonNull Runnable delivery) {
+        if (metricsEnabled) {
+            metrics.onTaskScheduled(threadMode, pendingTasks[threadMode.ordinal()].incrementAndGet());
+        }
+        dispatcher.dispatch(delivery);
+    }
+
+    /**
+     * Schedules delivery unless the dispatcher is full
+     *
+     * @return false if delivery was not scheduled
+     */
+    private boolean trySchedule(@NonNull ThreadMode threadMode, @NonNull Dispatcher dispatcher, @NonNull Runnable delivery) {
+        if (!metricsEnabled) {
+            return dispatcher.tryDispatch(delivery);
+        }
+        // Counted before dispatching since the delivery may start, and count itself out, right away
+        int pending = pendingTasks[threadMode.ordinal()].incrementAndGet();
+        if (!dispatcher.tryDispatch(delivery)) {
+            pendingTasks[threadMode.ordinal()].decrementAndGet();
+            return false;
+        }
+        metrics.onTaskScheduled(threadMode, pending);
+        return true;
+    }
+
+    /**
+     * Called by a scheduled delivery when it starts running
+     */
+    private void taskStarted(@NonNull ThreadMode threadMode, long scheduledAt) {
+        if (metricsEnabled) {
+            metrics.onTaskStarted(threadMode, pendingTasks[threadMode.ordinal()].decrementAndGet(), System.nanoTime() - scheduledAt);
+        }
+    }
+
+    /**
+     * Called by a bounded dispatcher when it drops a scheduled delivery
+     */
+    private void taskRejected(@NonNull ThreadMode threadMode, @NonNull Runnable delivery) {
+        int events = 1;
+        if (delivery instanceof BatchDelivery) {
+            events = 0;
+            for (Subscription[] subscriptions : ((BatchDelivery) delivery).subscriptions) {
+                if (subscriptions.length > 0) {
+                    events++;
+                }
+            }
+        } else if (delivery instanceof ConflatedDelivery) {
+            // Clear the pending event, otherwise later posts would replace it without ever scheduling a delivery again
+            events = ((ConflatedDelivery) delivery).subscription.take() != null ? 1 : 0;
+        } else if (delivery instanceof OrderedDelivery) {
+            // Empty the mailbox, nothing else would drain it and later posts would add to it without scheduling a task
+            OrderedSubscription subscription = ((OrderedDelivery) delivery).subscription;
+            events = 0;
+            do {
+                subscription.take();
+                events++;
+            } while (subscription.taken());
+        }
+        if (metricsEnabled) {
+            metrics.onTaskRejected(threadMode, pendingTasks[threadMode.ordinal()].decrementAndGet(), events);
+        }
+        if (debug) {
+            log("Rejected a delivery of " + events + " event(s) on ThreadMode." + threadMode);
+        }
+    }
+
+    private <T> void performPost(@NonNull T event, @NonNull Subscription[] subscriptions, @NonNull ThreadMode threadMode) {
+        for (Subscription subscription : subscriptions) {
+            performPost(event, subscription, threadMode);
+        }
+    }
+
+    private <T> void performPost(@NonNull T event, @NonNull Subscription subscription, @NonNull ThreadMode threadMode) {
+        long start = timeHandlers ? System.nanoTime() : 0L;
+        boolean handled;
+        try {
+            //noinspection unchecked
+            handled = subscription.handle(event);
+        } catch (Throwable t) {
+            if (metricsEnabled) {
+                metrics.onHandlerFailed(subscription, event, t);
+            }
+            // Report the same way an Rx delivery would and keep delivering to the remaining subscriptions
+            RxJavaPlugins.onError(t);
+            return;
+        }
+        if (timeHandlers) {
+            handled(subscription, event, threadMode, System.nanoTime() - start);
+        }
+        if (!handled) {
+            removeSubscription(subscription);
+        }
+    }
+
+    private void handled(@NonNull Subscription subscription, @NonNull Object event, @NonNull ThreadMode threadMode, long durationNanos) {
+        if (metricsEnabled) {
+            metrics.onDelivered(subscription, event, durationNanos);
+        }
+        if (slowHandlerListener != null && durationNanos > slowHandlerThresholdNanos[threadMode.ordinal()]) {
+            Object target = subscription.getTarget();
+            slowHandlerListener.onSlowHandler(target != null ? target.getClass() : null, event.getClass(), threadMode, durationNanos);
+        }
+    }
+
+    private void performPostAll(@NonNull Object[] events, @NonNull Subscription[][] subscriptions, @NonNull ThreadMode threadMode) {
+        for (int i = 0; i < events.length; i++) {
+            if (subscriptions[i].length > 0) {
+                performPost(events[i], subscriptions[i], threadMode);
+            }
+        }
+    }
+
+    /**
+     * @return the highest priority of the subscriptions of a batch, Integer.MIN_VALUE if there are none
+     */
+    private static int batchPriority(@NonNull Subscription[][] subscriptions) {
+        int priority = Integer.MIN_VALUE;
+        for (Subscription[] eventSubscriptions : subscriptions) {
+            if (eventSubscriptions.length > 0) {
+                priority = Math.max(priority, ListenerIndex.priorityOf(eventSubscriptions[0]));
+            }
+        }
+        return priority;
+    }
+
+    @NonNull
+    private Dispatcher getDispatcher(@NonNull ThreadMode threadMode) {
+        switch (threadMode) {
+            case CURRENT:
+                return currentDispatcher;
+            case MAIN:
+                return mainDispatcher;
+            case BACKGROUND:
+                return backgroundDispatcher;
+            default:
+                throw new IllegalArgumentException("Invalid ThreadMode: " + threadMode);
+        }
+    }
+
+    /**
+     * @return the dispatcher of the lane of subscription, or of its ThreadMode if it has no lane
+     */
+    @NonNull
+    private Dispatcher getDispatcher(@NonNull Subscription subscription) {
+        String lane = ListenerIndex.laneOf(subscription);
+        return lane != null ? laneDispatchers.get(lane) : getDispatcher(subscription.getThreadMode());
+    }
+
+    private void log(@NonNull String msg) {
+        if (debug) {
+            Platform.get().log(TAG, msg);
+        }
+    }
+
+    /**
+     * A single scheduled task delivering one event to every matching subscription of a ThreadMode
+     */
+    private final class Delivery implements Runnable, Dispatcher.Prioritized {
+        @NonNull
+        final Object event;
+        @NonNull
+        final Subscription[] subscriptions;
+        @NonNull
+        final ThreadMode threadMode;
+        final long scheduledAt;
+
+        Delivery(@NonNull Object event, @NonNull Subscription[] subscriptions, @NonNull ThreadMode threadMode) {
+            this.event = event;
+            this.subscriptions = subscriptions;
+            this.threadMode = threadMode;
+            this.scheduledAt = metricsEnabled ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void run() {
+            taskStarted(threadMode, scheduledAt);
+            performPost(event, subscriptions, threadMode);
+        }
+
+        @Override
+        public int getPriority() {
+            // Resolved subscriptions are ordered by priority
+            return ListenerIndex.priorityOf(subscriptions[0]);
+        }
+    }
+
+    /**
+     * A single scheduled task delivering a batch of events, in order, to their matching subscriptions of a ThreadMode
+     */
+    private final class BatchDelivery implements Runnable, Dispatcher.Prioritized {
+        @NonNull
+        final Object[] events;
+        @NonNull
+        final Subscription[][] subscriptions;
+        @NonNull
+        final ThreadMode threadMode;
+        final long scheduledAt;
+
+        BatchDelivery(@NonNull Object[] events, @NonNull Subscription[][] subscriptions, @NonNull ThreadMode threadMode) {
+            this.events = events;
+            this.subscriptions = subscriptions;
+            this.threadMode = threadMode;
+            this.scheduledAt = metricsEnabled ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void run() {
+            taskStarted(threadMode, scheduledAt);
+            performPostAll(events, subscriptions, threadMode);
+        }
+
+        @Override
+        public int getPriority() {
+            return batchPriority(subscriptions);
+        }
+    }
+
+    /**
+     * A scheduled task delivering the latest event offered to a conflating subscription
+     */
+    private final class ConflatedDelivery implements Runnable, Dispatcher.Prioritized {
+        @NonNull
+        final ConflatedSubscription subscription;
+        @NonNull
+        final ThreadMode threadMode;
+        final long scheduledAt;
+
+        ConflatedDelivery(@NonNull ConflatedSubscription subscription, @NonNull ThreadMode threadMode) {
+            this.subscription = subscription;
+            this.threadMode = threadMode;
+            this.scheduledAt = metricsEnabled ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void run() {
+            taskStarted(threadMode, scheduledAt);
+            Object event = subscription.take();
+            if (event != null) {
+                performPost(event, subscription, threadMode);
+            }
+        }
+
+        @Override
+        public int getPriority() {
+            return ListenerIndex.priorityOf(subscription);
+        }
+    }
+
+    /**
+     * A scheduled task draining the mailbox of an ordered ThreadMode.BACKGROUND subscription
+     */
+    private final class OrderedDelivery implements Runnable, Dispatcher.Prioritized {
+        @NonNull
+        final OrderedSubscription subscription;
+        final long scheduledAt;
+
+        OrderedDelivery(@NonNull OrderedSubscription subscription) {
+            this.subscription = subscription;
+            this.scheduledAt = metricsEnabled ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void run() {
+            taskStarted(ThreadMode.BACKGROUND, scheduledAt);
+            while (true) {
+                for (int i = 0; i < OrderedSubscription.DRAIN_LIMIT; i++) {
+                    performPost(subscription.take(), subscription, ThreadMode.BACKGROUND);
+                    if (!subscription.taken()) {
+                        return;
+                    }
+                }
+                // Let the mailboxes of other subscriptions have the thread, a new task delivers the rest.
+                // Waiting for room in a full dispatcher could leave every thread waiting, keep draining instead.
+                if (trySchedule(ThreadMode.BACKGROUND, getDispatcher(subscription), new OrderedDelivery(subscription))) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public int getPriority() {
+            return ListenerIndex.priorityOf(subscription);
+        }
+    }
+
+    /**
+     * Weak reference to a registered target along with the registrations made for it
+     */
+    private static final class TargetReference extends WeakReference<Object> {
+        @NonNull
+        final List<Registration> registrations = new ArrayList<>();
+
+        TargetReference(@NonNull Object target, @NonNull ReferenceQueue<Object> queue) {
+            super(target, queue);
+        }
+    }
+
+    /**
+     * Builds an instance of the {@link Bus}
+     */
+    public static class Builder {
+        private static final int DEFAULT_BACKGROUND_THREAD_POOL_SIZE = 2;
+        private static final int DEFAULT_REPLAY_DEPTH = 1;
+        private static final long DEFAULT_MAIN_SLOW_HANDLER_THRESHOLD_MILLIS = 16;
+
+        @Nullable
+        private Scheduler mainScheduler;
+        @Nullable
+        private Scheduler currentScheduler;
+        @Nullable
+        private Scheduler backgroundScheduler;
+        protected int backgroundThreadPoolSize = DEFAULT_BACKGROUND_THREAD_POOL_SIZE;
+        protected int replayDepth = DEFAULT_REPLAY_DEPTH;
+        protected long replayTimeToLiveNanos = ReplayCache.NO_EXPIRATION;
+        protected int replayMaxEntries = Integer.MAX_VALUE;
+        @NonNull
+        private BusMetrics metrics = BusMetrics.NONE;
+        @Nullable
+        private SlowHandlerListener slowHandlerListener;
+        @NonNull
+        private final long[] slowHandlerThresholdNanos = defaultSlowHandlerThresholds();
+        protected int backgroundQueueCapacity = Integer.MAX_VALUE;
+        @NonNull
+        protected OverflowPolicy backgroundOverflowPolicy = OverflowPolicy.BLOCK;
+        protected boolean orderedBackground = false;
+        protected int backgroundFanOutChunkSize = Integer.MAX_VALUE;
+        protected int adaptiveMinThreads;
+        protected int adaptiveMaxThreads;
+        protected long adaptiveTargetWaitNanos = 0;
+        protected int virtualThreadConcurrency = 0;
+        protected int ringBufferCapacity = 0;
+        @NonNull
+        protected WaitStrategy ringBufferWaitStrategy = WaitStrategy.PARK;
+        @NonNull
+        protected final Map<String, Scheduler> laneSchedulers = new LinkedHashMap<>();
+        @NonNull
+        protected final Map<String, Integer> laneThreadPoolSizes = new LinkedHashMap<>();
+        protected long mainDrainBudgetNanos = 0;
+        protected boolean asyncMainMessages = false;
+
+        /**
+         * Set the RxScheduler to use for ThreadMode.MAIN
+         * <p>
+         * Default AndroidSchedulers.mainThread() on Android, Schedulers.single() on a plain JVM
+         *
+         * @param scheduler the RxScheduler for the ThreadMode.MAIN
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setMainScheduler(@NonNull Scheduler scheduler) {
+            this.mainScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set the RxScheduler to use for ThreadMode.CURRENT
+         * <p>
+         * Default Schedulers.trampoline()
+         *
+         * @param scheduler the RxScheduler for the ThreadMode.CURRENT
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setCurrentScheduler(@NonNull Scheduler scheduler) {
+            this.currentScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set the RxScheduler to use for ThreadMode.BACKGROUND
+         * <p>
+         * Default a pool of backgroundThreadPoolSize threads owned by the bus, running deliveries to higher priority subscriptions first
+         *
+         * @param scheduler the RxScheduler for the ThreadMode.BACKGROUND
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setBackgroundScheduler(@NonNull Scheduler scheduler) {
+            this.backgroundScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Deliver ThreadMode.MAIN events with asynchronous messages on Android, so they are not held back by the sync barrier
+         * the Choreographer posts while waiting for a frame. Falls back to ordinary messages where asynchronous messages are
+         * unavailable (before API 16) and has no effect on a plain JVM.
+         * Only used if the default MainScheduler is used.
+         * <p>
+         * Default is {@literal false}
+         *
+         * @param async true to use asynchronous messages
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setAsyncMainMessages(boolean async) {
+            this.asyncMainMessages = async;
+            return this;
+        }
+
+        /**
+         * Queue ThreadMode.MAIN deliveries in the bus and run them from one task on the main Scheduler per turn,
+         * for at most budget per turn. Deliveries left over when the budget is used up run in the next turn, letting the
+         * thread handle other work, such as input and drawing on Android, during a burst of events.
+         * <p>
+         * Default is to schedule every delivery on the main Scheduler separately
+         *
+         * @param budget how long a turn may run deliveries before yielding the thread
+         * @param unit   the unit of budget
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setMainDrainBudget(long budget, @NonNull TimeUnit unit) {
+            if (budget < 1) {
+                throw new IllegalArgumentException("Main drain budget must be >= 1");
+            }
+            this.mainDrainBudgetNanos = unit.toNanos(budget);
+            return this;
+        }
+
+        /**
+         * Set the number of threads for ThreadMode.BACKGROUND
+         * Only used if the default BackgroundScheduler is used.
+         * <p>
+         * Default is {@literal 2}
+         *
+         * @param threadPoolSize The number of threads for the background ThreadMode
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setBackgroundThreadPoolSize(int threadPoolSize) {
+            if (threadPoolSize < 1) {
+                throw new IllegalArgumentException("Thread pool size must be >= 1");
+            }
+            this.backgroundThreadPoolSize = threadPoolSize;
+            return this;
+        }
+
+        /**
+         * Run every ThreadMode.BACKGROUND delivery, or every mailbox with {@link #setOrderedBackgroundDelivery(boolean)}, on its own
+         * virtual thread where the runtime has them (Java 21 and later), with at most maxConcurrency deliveries running at once.
+         * Suits handlers that mostly block on I/O. Elsewhere, including Android, the other background settings apply unchanged.
+         * Priorities do not reorder deliveries on virtual threads.
+         * Only used if the default BackgroundScheduler is used, and takes precedence over the other background pool settings.
+         * <p>
+         * Default is to use a pool of platform threads
+         *
+         * @param maxConcurrency the most deliveries running at once
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setVirtualThreadBackground(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("Max concurrency must be >= 1");
+            }
+            this.virtualThreadConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Run ThreadMode.BACKGROUND deliveries on backgroundThreadPoolSize threads taking them from a ring buffer of capacity
+         * slots allocated up front, instead of a pool with a growing queue. Dispatching a delivery then allocates nothing beyond
+         * the delivery itself, and idle threads wait for deliveries with waitStrategy rather than being woken by the queue,
+         * trading CPU for steadier latency at high event rates. When the buffer is full posting threads wait for room with the
+         * same strategy, so like {@link OverflowPolicy#BLOCK} posting BACKGROUND events from BACKGROUND handlers can deadlock
+         * once the buffer stays full. Deliveries run in the order they were posted, priorities do not reorder them.
+         * Only used if the default BackgroundScheduler is used without {@link #setVirtualThreadBackground(int)}, and takes
+         * precedence over {@link #setBackgroundQueueCapacity(int, OverflowPolicy)} and {@link #setAdaptiveBackgroundPool(int, int, long, TimeUnit)}.
+         * <p>
+         * Default is to use a thread pool
+         *
+         * @param capacity     the number of deliveries the buffer holds, rounded up to a power of two
+         * @param waitStrategy how threads wait while the buffer is empty or full
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setBackgroundRingBuffer(int capacity, @NonNull WaitStrategy waitStrategy) {
+            if (capacity < 1 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Ring buffer capacity must be >= 1 and <= 2^30");
+            }
+            this.ringBufferCapacity = capacity;
+            this.ringBufferWaitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Let the number of threads for ThreadMode.BACKGROUND grow and shrink between minThreads and maxThreads with the load.
+         * The pool doubles while deliveries wait longer than targetQueueWait for a thread, and loses a thread at a time while
+         * they wait less than half of it and fewer than half of the threads are busy. Idle threads stop after a while, down to
+         * none. The number of live threads is returned by {@link Bus#getBackgroundThreadPoolSize()}.
+         * Only used if the default BackgroundScheduler is used without {@link #setBackgroundQueueCapacity(int, OverflowPolicy)}.
+         * <p>
+         * Default is a fixed pool of backgroundThreadPoolSize threads
+         *
+         * @param minThreads      the fewest threads the pool shrinks to
+         * @param maxThreads      the most threads the pool grows to
+         * @param targetQueueWait how long a delivery may wait for a thread before the pool grows
+         * @param unit            the unit of targetQueueWait
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setAdaptiveBackgroundPool(int minThreads, int maxThreads, long targetQueueWait, @NonNull TimeUnit unit) {
+            if (minThreads < 1 || maxThreads < minThreads) {
+                throw new IllegalArgumentException("Thread pool size must be >= 1 and minThreads <= maxThreads");
+            }
+            if (targetQueueWait < 1) {
+                throw new IllegalArgumentException("Target queue wait must be >= 1");
+            }
+            this.adaptiveMinThreads = minThreads;
+            this.adaptiveMaxThreads = maxThreads;
+            this.adaptiveTargetWaitNanos = unit.toNanos(targetQueueWait);
+            return this;
+        }
+
+        /**
+         * Deliver the events of each ThreadMode.BACKGROUND subscription one at a time in the order they were posted, while
+         * different subscriptions still receive events in parallel across the background threads. Without this two events
+         * posted to the same subscription may be handled concurrently or out of order when there is more than one thread.
+         * <p>
+         * A mailbox is drained in turns so one busy subscription cannot hold a thread. When the background queue is full
+         * the thread keeps draining instead of waiting for room, but handlers that post BACKGROUND events still wait with
+         * {@link OverflowPolicy#BLOCK} or a ring buffer and can deadlock the pool.
+         * <p>
+         * Default is {@literal false}
+         *
+         * @param ordered true to deliver in order per subscription
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setOrderedBackgroundDelivery(boolean ordered) {
+            this.orderedBackground = ordered;
+            return this;
+        }
+
+        /**
+         * Split the delivery of an event to many ThreadMode.BACKGROUND subscriptions into tasks of at most chunkSize
+         * subscriptions, so the background threads handle a large fan-out in parallel instead of one thread running every
+         * subscription in turn. Subscriptions in different chunks may then handle the same event concurrently.
+         * {@link Bus#postAll(Object...)} splits its batch into tasks of at most chunkSize deliveries the same way, so the events of
+         * a batch may then be handled concurrently and out of order.
+         * Has no effect with {@link #setOrderedBackgroundDelivery(boolean)}, which already delivers to each subscription separately.
+         * <p>
+         * Default is to deliver an event to all BACKGROUND subscriptions from one task
+         *
+         * @param chunkSize the number of subscriptions delivered to by one task
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setBackgroundFanOutChunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("Background fan out chunk size must be >= 1");
+            }
+            this.backgroundFanOutChunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Bind a lane to the RxScheduler running the ThreadMode.BACKGROUND subscriptions that set it with {@link Subscribe#lane()},
+         * isolating them from the shared background threads and the other lanes.
+         * Registering a subscription on a lane that is not bound throws an IllegalArgumentException.
+         *
+         * @param lane      the name of the lane
+         * @param scheduler the RxScheduler for the lane
+         * @return This builder to allow for chaining calls to set methods
+         * @see #setLaneThreadPoolSize(String, int)
+         */
+        @NonNull
+        public Builder setLaneScheduler(@NonNull String lane, @NonNull Scheduler scheduler) {
+            this.laneThreadPoolSizes.remove(lane);
+            this.laneSchedulers.put(lane, scheduler);
+            return this;
+        }
+
+        /**
+         * Bind a lane to a pool of threadPoolSize threads owned by the bus, running the ThreadMode.BACKGROUND subscriptions that
+         * set it with {@link Subscribe#lane()} with higher priority subscriptions first.
+         * Registering a subscription on a lane that is not bound throws an IllegalArgumentException.
+         *
+         * @param lane           the name of the lane
+         * @param threadPoolSize the number of threads for the lane
+         * @return This builder to allow for chaining calls to set methods
+         * @see #setLaneScheduler(String, Scheduler)
+         */
+        @NonNull
+        public Builder setLaneThreadPoolSize(@NonNull String lane, int threadPoolSize) {
+            if (threadPoolSize < 1) {
+                throw new IllegalArgumentException("Thread pool size must be >= 1");
+            }
+            this.laneSchedulers.remove(lane);
+            this.laneThreadPoolSizes.put(lane, threadPoolSize);
+            return this;
+        }
+
+        /**
+         * Bound the queue of ThreadMode.BACKGROUND deliveries waiting for a thread, applying overflowPolicy when it is full.
+         * Without a bound a fast poster and slow BACKGROUND handlers can grow the heap without limit.
+         * Waiting deliveries still run in {@link Subscribe#priority()} order.
+         * Only used if the default BackgroundScheduler is used.
+         * <p>
+         * Default is unbounded
+         *
+         * @param capacity       the number of deliveries that may wait for a background thread
+         * @param overflowPolicy what happens to a delivery when the queue is full
+         * @return This builder to allow for chaining calls to set methods
+         * @see BusMetrics#onTaskRejected(ThreadMode, int, int)
+         */
+        @NonNull
+        public Builder setBackgroundQueueCapacity(int capacity, @NonNull OverflowPolicy overflowPolicy) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Background queue capacity must be >= 1");
+            }
+            this.backgroundQueueCapacity = capacity;
+            this.backgroundOverflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set the number of sticky events of each event class that are replayed to newly registered subscriptions
+         * <p>
+         * Default is {@literal 1}
+         *
+         * @param depth The number of sticky events kept per event class
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setReplayDepth(int depth) {
+            if (depth < 1) {
+                throw new IllegalArgumentException("Replay depth must be >= 1");
+            }
+            this.replayDepth = depth;
+            return this;
+        }
+
+        /**
+         * Set how long a sticky event is replayed to newly registered subscriptions after it was posted
+         * <p>
+         * Default is to keep sticky events until they are replaced, removed or evicted
+         *
+         * @param timeToLive How long sticky events are kept
+         * @param unit       The unit of timeToLive
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setReplayTimeToLive(long timeToLive, @NonNull TimeUnit unit) {
+            if (timeToLive < 1) {
+                throw new IllegalArgumentException("Replay time to live must be >= 1");
+            }
+            this.replayTimeToLiveNanos = unit.toNanos(timeToLive);
+            return this;
+        }
+
+        /**
+         * Set the number of sticky events kept across all event classes, the least recently posted or replayed events are evicted first
+         * <p>
+         * Default is unbounded
+         *
+         * @param maxEntries The number of sticky events kept
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setReplayMaxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("Replay max entries must be >= 1");
+            }
+            this.replayMaxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Set the listener receiving counters and timings from the bus
+         * <p>
+         * Default BusMetrics.NONE, which records nothing and adds no overhead
+         *
+         * @param metrics the listener for the metrics of the bus
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setMetrics(@NonNull BusMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Set the listener notified of handlers that run longer than the threshold of their ThreadMode.
+         * Handlers are only timed when a listener or metrics are set.
+         * <p>
+         * Default none
+         *
+         * @param listener the listener notified of slow handlers
+         * @return This builder to allow for chaining calls to set methods
+         * @see #setSlowHandlerThreshold(ThreadMode, long, TimeUnit)
+         */
+        @NonNull
+        public Builder setSlowHandlerListener(@NonNull SlowHandlerListener listener) {
+            this.slowHandlerListener = listener;
+            return this;
+        }
+
+        /**
+         * Set how long a handler of threadMode may run before it is reported to the SlowHandlerListener
+         * <p>
+         * Default is {@literal 16ms}, a frame, for ThreadMode.MAIN and no threshold for the other ThreadModes
+         *
+         * @param threadMode the ThreadMode the threshold applies to
+         * @param threshold  the longest a handler may run without being reported
+         * @param unit       the unit of threshold
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        public Builder setSlowHandlerThreshold(@NonNull ThreadMode threadMode, long threshold, @NonNull TimeUnit unit) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Slow handler threshold must be >= 0");
+            }
+            this.slowHandlerThresholdNanos[threadMode.ordinal()] = unit.toNanos(threshold);
+            return this;
+        }
+
+        @NonNull
+        private static long[] defaultSlowHandlerThresholds() {
+            long[] thresholds = new long[ThreadMode.values().length];
+            Arrays.fill(thresholds, Long.MAX_VALUE);
+            thresholds[ThreadMode.MAIN.ordinal()] = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAIN_SLOW_HANDLER_THRESHOLD_MILLIS);
+            return thresholds;
+        }
+
+        /**
+         * @deprecated Subscriptions are removed as soon as their target is collected, there is no periodic cleanup anymore.
+         *
+         * @param eventCleanupCount ignored
+         * @return This builder to allow for chaining calls to set methods
+         */
+        @NonNull
+        @Deprecated
+        public Builder setEventCleanupCount(int eventCleanupCount) {
+            return this;
+        }
+
+        /**
+         * Builds a new instance of the bus with the given configuration
+         *
+         * @return the new instance of the bus
+         */
+        @NonNull
+        public Bus build() {
+            if (mainScheduler == null) {
+                mainScheduler = asyncMainMessages ? Platform.get().asyncMainScheduler() : Platform.get().defaultMainScheduler();
+            }
+            if (currentScheduler == null) {
+                currentScheduler = Schedulers.trampoline();
+            }
+            // A null backgroundScheduler makes the bus run BACKGROUND deliveries on its own pool
+            return new Bus(this, mainScheduler, currentScheduler, backgroundScheduler);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives counters and timings from a {@link Bus}, set with {@link Bus.Builder#setMetrics(BusMetrics)}.
+ * <p>
+ * Every method does nothing by default, override the ones of interest. They are called on the posting and delivering threads so
+ * implementations must be thread safe and cheap, e.g. incrementing atomic counters.
+ * When no metrics are set the bus skips this bookkeeping entirely, including reading the clock for durations.
+ */
+public abstract class BusMetrics {
+    /**
+     * The default, records nothing
+     */
+    public static final BusMetrics NONE = new BusMetrics() {
+    };
+
+    /**
+     * An event was posted
+     *
+     * @param eventClass    the class of the posted event
+     * @param subscriptions the number of subscriptions it is delivered to across all ThreadModes, 0 if nothing subscribes to it
+     */
+    public void onPost(@NonNull Class<?> eventClass, int subscriptions) {
+    }
+
+    /**
+     * A delivery task was handed to the Scheduler of threadMode
+     *
+     * @param threadMode   the ThreadMode of the task
+     * @param pendingTasks the tasks of threadMode that have been scheduled but not started, including this one
+     */
+    public void onTaskScheduled(@NonNull ThreadMode threadMode, int pendingTasks) {
+    }
+
+    /**
+     * A delivery task started running on its Scheduler
+     *
+     * @param threadMode   the ThreadMode of the task
+     * @param pendingTasks the tasks of threadMode that have been scheduled but not started
+     * @param queuedNanos  the time between the task being scheduled and starting
+     */
+    public void onTaskStarted(@NonNull ThreadMode threadMode, int pendingTasks, long queuedNanos) {
+    }
+
+    /**
+     * A delivery task was dropped because the bounded queue of threadMode was full, see {@link OverflowPolicy}
+     *
+     * @param threadMode   the ThreadMode of the task
+     * @param pendingTasks the tasks of threadMode that have been scheduled but not started
+     * @param events       the number of events the task would have delivered
+     */
+    public void onTaskRejected(@NonNull ThreadMode threadMode, int pendingTasks, int events) {
+    }
+
+    /**
+     * An event replaced the pending event of a conflating subscription instead of being queued
+     *
+     * @param subscription the conflating subscription
+     * @param threadMode   the ThreadMode of the subscription
+     */
+    public void onConflated(@NonNull Subscription<?> subscription, @NonNull ThreadMode threadMode) {
+    }
+
+    /**
+     * A subscription handled an event
+     *
+     * @param subscription  the subscription, its getThreadMode() is the ThreadMode the event was delivered on
+     * @param event         the event
+     * @param durationNanos the time spent in {@link Subscription#handle(Object)}
+     */
+    public void onDelivered(@NonNull Subscription<?> subscription, @NonNull Object event, long durationNanos) {
+    }
+
+    /**
+     * A subscription threw while handling an event, the error is also reported to RxJavaPlugins.onError
+     *
+     * @param subscription the subscription
+     * @param event        the event
+     * @param error        what the subscription threw
+     */
+    public void onHandlerFailed(@NonNull Subscription<?> subscription, @NonNull Object event, @NonNull Throwable error) {
+    }
+
+    /**
+     * Subscriptions were removed by the bus because their target was collected or their handle returned false
+     *
+     * @param count the number of subscriptions removed
+     */
+    public void onSubscriptionsReaped(int count) {
+    }
+}
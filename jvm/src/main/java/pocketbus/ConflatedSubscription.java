@@ -0,0 +1,63 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registered in place of a conflating {@link ConfiguredSubscription}, holding the one event waiting to be delivered to it.
+ */
+final class ConflatedSubscription<T> extends ForwardingSubscription<T> {
+    @NonNull
+    private final AtomicReference<Object> pendingEvent = new AtomicReference<>();
+
+    private ConflatedSubscription(@NonNull Subscription<T> subscription) {
+        super(subscription);
+    }
+
+    /**
+     * @return the subscriptions with every conflating subscription wrapped, or the same list if none are conflating
+     */
+    @NonNull
+    static <S extends Subscription<?>> List<Subscription<?>> wrap(@NonNull List<S> subscriptions) {
+        List<Subscription<?>> wrapped = null;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            Subscription<?> subscription = subscriptions.get(i);
+            if (subscription instanceof ConfiguredSubscription && ((ConfiguredSubscription<?>) subscription).isConflating()) {
+                if (wrapped == null) {
+                    wrapped = new ArrayList<Subscription<?>>(subscriptions.subList(0, i));
+                }
+                wrapped.add(wrap(subscription));
+            } else if (wrapped != null) {
+                wrapped.add(subscription);
+            }
+        }
+        //noinspection unchecked
+        return wrapped != null ? wrapped : (List<Subscription<?>>) subscriptions;
+    }
+
+    @NonNull
+    private static <T> ConflatedSubscription<T> wrap(@NonNull Subscription<T> subscription) {
+        return new ConflatedSubscription<>(subscription);
+    }
+
+    /**
+     * Makes event the pending event
+     *
+     * @return true if no event was pending, in which case the caller must schedule a delivery, false if it replaced the pending event
+     */
+    boolean offer(@NonNull Object event) {
+        return pendingEvent.getAndSet(event) == null;
+    }
+
+    /**
+     * @return the pending event, leaving none pending
+     */
+    @Nullable
+    Object take() {
+        return pendingEvent.getAndSet(null);
+    }
+}
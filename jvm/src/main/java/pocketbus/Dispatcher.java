@@ -0,0 +1,49 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Runs the delivery tasks of one ThreadMode
+ */
+interface Dispatcher {
+    void dispatch(@NonNull Runnable delivery);
+
+    /**
+     * Dispatches delivery unless the dispatcher is full, never waiting for room or dropping a delivery
+     *
+     * @return false if delivery was not dispatched
+     */
+    boolean tryDispatch(@NonNull Runnable delivery);
+
+    /**
+     * A delivery that knows the highest priority of the subscriptions it delivers to
+     */
+    interface Prioritized {
+        int getPriority();
+    }
+
+    /**
+     * Schedules every delivery as its own task on an Rx Scheduler
+     */
+    final class SchedulerDispatcher implements Dispatcher {
+        @NonNull
+        private final Scheduler scheduler;
+
+        SchedulerDispatcher(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void dispatch(@NonNull Runnable delivery) {
+            scheduler.scheduleDirect(delivery);
+        }
+
+        @Override
+        public boolean tryDispatch(@NonNull Runnable delivery) {
+            dispatch(delivery);
+            return true;
+        }
+    }
+}
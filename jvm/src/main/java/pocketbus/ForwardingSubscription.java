@@ -0,0 +1,58 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Registered in place of a subscription the bus needs to keep delivery state for.
+ * <p>
+ * Behaves like the subscription it wraps so registration, unregistration and handle() work unchanged.
+ */
+abstract class ForwardingSubscription<T> implements Subscription<T> {
+    @NonNull
+    final Subscription<T> subscription;
+
+    ForwardingSubscription(@NonNull Subscription<T> subscription) {
+        this.subscription = subscription;
+    }
+
+    /**
+     * @return the subscription wrapped by subscription, or subscription itself if it is not wrapped
+     */
+    @NonNull
+    static Subscription<?> unwrap(@NonNull Subscription<?> subscription) {
+        while (subscription instanceof ForwardingSubscription) {
+            subscription = ((ForwardingSubscription<?>) subscription).subscription;
+        }
+        return subscription;
+    }
+
+    @Override
+    public boolean handle(T t) {
+        return subscription.handle(t);
+    }
+
+    @Override
+    public Class<T> getEventClass() {
+        return subscription.getEventClass();
+    }
+
+    @Override
+    public ThreadMode getThreadMode() {
+        return subscription.getThreadMode();
+    }
+
+    @Override
+    public <E> E getTarget() {
+        return subscription.getTarget();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || subscription.equals(o instanceof Subscription ? unwrap((Subscription<?>) o) : o);
+    }
+
+    @Override
+    public int hashCode() {
+        return subscription.hashCode();
+    }
+}
@@ -0,0 +1,420 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of the subscriptions registered with a {@link Bus}.
+ * <p>
+ * Every change builds a new index so posting threads can read the current one without locking or copying.
+ * Only the lookups from event class to matching subscriptions are mutable, and they are cached per snapshot.
+ */
+final class ListenerIndex {
+    static final ListenerIndex EMPTY = new ListenerIndex(new EnumMap<ThreadMode, Map<Class<?>, Subscription[]>>(ThreadMode.class));
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+    /**
+     * Higher priorities first, the sort is stable so equal priorities keep registration order
+     */
+    private static final Comparator<Subscription> BY_PRIORITY = new Comparator<Subscription>() {
+        @Override
+        public int compare(Subscription lhs, Subscription rhs) {
+            int lhsPriority = priorityOf(lhs);
+            int rhsPriority = priorityOf(rhs);
+            return lhsPriority < rhsPriority ? 1 : (lhsPriority == rhsPriority ? 0 : -1);
+        }
+    };
+
+    @NonNull
+    private final EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> listeners;
+    @NonNull
+    private final ConcurrentMap<Class<?>, ResolvedListeners> resolvedListeners = new ConcurrentHashMap<>();
+
+    private ListenerIndex(@NonNull EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> listeners) {
+        for (ThreadMode threadMode : ThreadMode.values()) {
+            Map<Class<?>, Subscription[]> listenerMap = listeners.get(threadMode);
+            listeners.put(threadMode, listenerMap == null || listenerMap.isEmpty()
+                    ? Collections.<Class<?>, Subscription[]>emptyMap() : Collections.unmodifiableMap(listenerMap));
+        }
+        this.listeners = listeners;
+    }
+
+    /**
+     * @param eventClass the concrete class of a posted event
+     * @return the subscriptions of every type the eventClass is assignable to, grouped by ThreadMode
+     */
+    @NonNull
+    ResolvedListeners resolve(@NonNull Class<?> eventClass) {
+        ResolvedListeners resolved = resolvedListeners.get(eventClass);
+        if (resolved == null) {
+            resolved = new ResolvedListeners(resolve(eventClass, ThreadMode.CURRENT), resolve(eventClass, ThreadMode.MAIN),
+                    resolve(eventClass, ThreadMode.BACKGROUND));
+            ResolvedListeners existing = resolvedListeners.putIfAbsent(eventClass, resolved);
+            if (existing != null) {
+                resolved = existing;
+            }
+        }
+        return resolved;
+    }
+
+    @NonNull
+    private Subscription[] resolve(@NonNull Class<?> eventClass, @NonNull ThreadMode threadMode) {
+        List<Subscription> matchedSubscriptions = null;
+        boolean prioritized = false;
+        for (Map.Entry<Class<?>, Subscription[]> entry : listeners.get(threadMode).entrySet()) {
+            if (entry.getKey().isAssignableFrom(eventClass)) {
+                if (matchedSubscriptions == null) {
+                    matchedSubscriptions = new ArrayList<>();
+                }
+                for (Subscription subscription : entry.getValue()) {
+                    matchedSubscriptions.add(subscription);
+                    prioritized |= priorityOf(subscription) != 0;
+                }
+            }
+        }
+        if (matchedSubscriptions == null) {
+            return NO_SUBSCRIPTIONS;
+        }
+        if (prioritized) {
+            Collections.sort(matchedSubscriptions, BY_PRIORITY);
+        }
+        return matchedSubscriptions.toArray(new Subscription[matchedSubscriptions.size()]);
+    }
+
+    /**
+     * @return the priority set with {@link Subscribe#priority()}, 0 for subscriptions without one
+     */
+    static int priorityOf(@NonNull Subscription<?> subscription) {
+        Subscription<?> unwrapped = ForwardingSubscription.unwrap(subscription);
+        return unwrapped instanceof ConfiguredSubscription ? ((ConfiguredSubscription<?>) unwrapped).getPriority() : 0;
+    }
+
+    /**
+     * @return the lane set with {@link Subscribe#lane()}, null for subscriptions without one
+     */
+    @Nullable
+    static String laneOf(@NonNull Subscription<?> subscription) {
+        Subscription<?> unwrapped = ForwardingSubscription.unwrap(subscription);
+        return unwrapped instanceof ConfiguredSubscription ? ((ConfiguredSubscription<?>) unwrapped).getLane() : null;
+    }
+
+    /**
+     * @param subscriptions the subscriptions to add, getEventClass() must not return null
+     * @return a new index containing these subscriptions
+     */
+    @NonNull
+    ListenerIndex plus(@NonNull List<? extends Subscription> subscriptions) {
+        EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> listeners = copyListeners();
+        for (Subscription subscription : subscriptions) {
+            Map<Class<?>, Subscription[]> listenerMap = listeners.get(subscription.getThreadMode());
+            Class<?> eventClass = subscription.getEventClass();
+            Subscription[] existing = listenerMap.get(eventClass);
+            listenerMap.put(eventClass, append(existing != null ? existing : NO_SUBSCRIPTIONS, subscription));
+        }
+        return new ListenerIndex(listeners);
+    }
+
+    /**
+     * Removes each subscription along with any subscription of the same type whose target has been collected
+     *
+     * @param subscriptions the subscriptions to remove, getEventClass() must not return null
+     * @return a new index without these subscriptions
+     */
+    @NonNull
+    ListenerIndex minus(@NonNull List<? extends Subscription> subscriptions) {
+        EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> listeners = copyListeners();
+        for (Subscription subscription : subscriptions) {
+            remove(listeners.get(subscription.getThreadMode()), subscription.getEventClass(), subscription);
+        }
+        return new ListenerIndex(listeners);
+    }
+
+    /**
+     * Removes exactly these subscription instances, touching only the subscription types they were registered for
+     * <p>
+     * Like every change this copies the index: the event class maps of every ThreadMode are copied, and each removal
+     * searches and copies the array of its type, so a removal costs O(event classes + subscriptions of its type) and the
+     * new snapshot starts with an empty lookup cache. Slot indices are not kept since any removal from an array would
+     * shift the slots of the others; unregistering is expected to be rare next to posting.
+     *
+     * @param subscriptions the registered subscriptions to remove
+     * @return a new index without these subscriptions
+     */
+    @NonNull
+    ListenerIndex without(@NonNull List<? extends Subscription> subscriptions) {
+        EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> listeners = copyListeners();
+        for (Subscription subscription : subscriptions) {
+            Map<Class<?>, Subscription[]> listenerMap = listeners.get(subscription.getThreadMode());
+            Class<?> eventClass = subscription.getEventClass();
+            Subscription[] existing = listenerMap.get(eventClass);
+            int index = existing != null ? indexOf(existing, subscription) : -1;
+            if (index < 0) {
+                continue;
+            }
+            if (existing.length == 1) {
+                listenerMap.remove(eventClass);
+            } else {
+                Subscription[] remaining = new Subscription[existing.length - 1];
+                System.arraycopy(existing, 0, remaining, 0, index);
+                System.arraycopy(existing, index + 1, remaining, index, remaining.length - index);
+                listenerMap.put(eventClass, remaining);
+            }
+        }
+        return new ListenerIndex(listeners);
+    }
+
+    /**
+     * @return true if this exact subscription instance is in the index
+     */
+    boolean contains(@NonNull Subscription subscription) {
+        Subscription[] subscriptions = listeners.get(subscription.getThreadMode()).get(subscription.getEventClass());
+        return subscriptions != null && indexOf(subscriptions, subscription) >= 0;
+    }
+
+    @NonNull
+    private EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> copyListeners() {
+        EnumMap<ThreadMode, Map<Class<?>, Subscription[]>> copy = new EnumMap<>(ThreadMode.class);
+        for (Map.Entry<ThreadMode, Map<Class<?>, Subscription[]>> entry : listeners.entrySet()) {
+            copy.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Removes the subscriptions of eventClass that equal registeredSubscription or whose target has been collected
+     */
+    private static void remove(@NonNull Map<Class<?>, Subscription[]> listenerMap, @NonNull Class<?> eventClass,
+                               @Nullable Subscription registeredSubscription) {
+        Subscription[] subscriptions = listenerMap.get(eventClass);
+        if (subscriptions == null) {
+            return;
+        }
+        List<Subscription> remaining = new ArrayList<>(subscriptions.length);
+        Collections.addAll(remaining, subscriptions);
+        Iterator<Subscription> iterator = remaining.iterator();
+        while (iterator.hasNext()) {
+            Subscription subscription = iterator.next();
+            if (subscription.getTarget() == null || subscription.equals(registeredSubscription)) {
+                iterator.remove();
+            }
+        }
+        if (remaining.isEmpty()) {
+            listenerMap.remove(eventClass);
+        } else if (remaining.size() != subscriptions.length) {
+            listenerMap.put(eventClass, remaining.toArray(new Subscription[remaining.size()]));
+        }
+    }
+
+    private static int indexOf(@NonNull Subscription[] subscriptions, @NonNull Subscription subscription) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] == subscription) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @NonNull
+    private static Subscription[] append(@NonNull Subscription[] subscriptions, @NonNull Subscription subscription) {
+        Subscription[] appended = new Subscription[subscriptions.length + 1];
+        System.arraycopy(subscriptions, 0, appended, 0, subscriptions.length);
+        appended[subscriptions.length] = subscription;
+        return appended;
+    }
+
+    /**
+     * The subscriptions matching a single event class, merged across all matching subscription types in registration order of the types
+     * and then ordered by priority.
+     * Conflated subscriptions are kept apart from the others since each of them is delivered on its own, and so are the
+     * BACKGROUND subscriptions of each lane since every lane has its own dispatcher. {@link #getAll(ThreadMode)} keeps both kinds
+     * in one array for delivering them in priority order.
+     */
+    static final class ResolvedListeners {
+        private static final ConflatedSubscription[] NO_CONFLATED_SUBSCRIPTIONS = new ConflatedSubscription[0];
+        private static final String[] NO_LANES = new String[0];
+        private static final Subscription[][] NO_LANE_SUBSCRIPTIONS = new Subscription[0][];
+
+        @NonNull
+        final Subscription[] current;
+        @NonNull
+        final Subscription[] main;
+        @NonNull
+        final Subscription[] background;
+        @NonNull
+        final ConflatedSubscription[] conflatedCurrent;
+        @NonNull
+        final ConflatedSubscription[] conflatedMain;
+        @NonNull
+        final ConflatedSubscription[] conflatedBackground;
+        /**
+         * The conflated and other subscriptions of each ThreadMode in priority order, without the BACKGROUND subscriptions of lanes
+         * that are not conflated
+         */
+        @NonNull
+        final Subscription[] allCurrent;
+        @NonNull
+        final Subscription[] allMain;
+        @NonNull
+        final Subscription[] allBackground;
+        /**
+         * The lanes of the BACKGROUND subscriptions that are not conflated, in order of their first subscription
+         */
+        @NonNull
+        final String[] lanes;
+        /**
+         * The BACKGROUND subscriptions of each of the lanes, not included in background
+         */
+        @NonNull
+        final Subscription[][] laneSubscriptions;
+        /**
+         * The number of matching subscriptions across all ThreadModes
+         */
+        final int size;
+
+        ResolvedListeners(@NonNull Subscription[] current, @NonNull Subscription[] main, @NonNull Subscription[] background) {
+            this.conflatedCurrent = conflated(current);
+            this.conflatedMain = conflated(main);
+            this.conflatedBackground = conflated(background);
+            this.current = notConflated(current, conflatedCurrent.length);
+            this.main = notConflated(main, conflatedMain.length);
+            Subscription[] backgroundWithLanes = notConflated(background, conflatedBackground.length);
+            LinkedHashMap<String, List<Subscription>> lanes = lanes(backgroundWithLanes);
+            this.allCurrent = current;
+            this.allMain = main;
+            if (lanes == null) {
+                this.background = backgroundWithLanes;
+                this.allBackground = background;
+                this.lanes = NO_LANES;
+                this.laneSubscriptions = NO_LANE_SUBSCRIPTIONS;
+            } else {
+                List<Subscription> allWithoutLane = new ArrayList<>();
+                for (Subscription subscription : background) {
+                    if (subscription instanceof ConflatedSubscription || laneOf(subscription) == null) {
+                        allWithoutLane.add(subscription);
+                    }
+                }
+                this.allBackground = allWithoutLane.toArray(new Subscription[allWithoutLane.size()]);
+                List<Subscription> withoutLane = new ArrayList<>();
+                for (Subscription subscription : backgroundWithLanes) {
+                    if (laneOf(subscription) == null) {
+                        withoutLane.add(subscription);
+                    }
+                }
+                this.background = withoutLane.toArray(new Subscription[withoutLane.size()]);
+                this.lanes = lanes.keySet().toArray(new String[lanes.size()]);
+                this.laneSubscriptions = new Subscription[lanes.size()][];
+                int i = 0;
+                for (List<Subscription> laneSubscriptions : lanes.values()) {
+                    this.laneSubscriptions[i++] = laneSubscriptions.toArray(new Subscription[laneSubscriptions.size()]);
+                }
+            }
+            this.size = current.length + main.length + background.length;
+        }
+
+        @NonNull
+        Subscription[] get(@NonNull ThreadMode threadMode) {
+            switch (threadMode) {
+                case CURRENT:
+                    return current;
+                case MAIN:
+                    return main;
+                case BACKGROUND:
+                    return background;
+                default:
+                    throw new IllegalArgumentException("Invalid ThreadMode: " + threadMode);
+            }
+        }
+
+        @NonNull
+        Subscription[] getAll(@NonNull ThreadMode threadMode) {
+            switch (threadMode) {
+                case CURRENT:
+                    return allCurrent;
+                case MAIN:
+                    return allMain;
+                case BACKGROUND:
+                    return allBackground;
+                default:
+                    throw new IllegalArgumentException("Invalid ThreadMode: " + threadMode);
+            }
+        }
+
+        @NonNull
+        ConflatedSubscription[] getConflated(@NonNull ThreadMode threadMode) {
+            switch (threadMode) {
+                case CURRENT:
+                    return conflatedCurrent;
+                case MAIN:
+                    return conflatedMain;
+                case BACKGROUND:
+                    return conflatedBackground;
+                default:
+                    throw new IllegalArgumentException("Invalid ThreadMode: " + threadMode);
+            }
+        }
+
+        /**
+         * @return the subscriptions of each lane keeping their priority order, null if none has a lane
+         */
+        @Nullable
+        private static LinkedHashMap<String, List<Subscription>> lanes(@NonNull Subscription[] subscriptions) {
+            LinkedHashMap<String, List<Subscription>> lanes = null;
+            for (Subscription subscription : subscriptions) {
+                String lane = laneOf(subscription);
+                if (lane == null) {
+                    continue;
+                }
+                if (lanes == null) {
+                    lanes = new LinkedHashMap<>();
+                }
+                List<Subscription> laneSubscriptions = lanes.get(lane);
+                if (laneSubscriptions == null) {
+                    laneSubscriptions = new ArrayList<>();
+                    lanes.put(lane, laneSubscriptions);
+                }
+                laneSubscriptions.add(subscription);
+            }
+            return lanes;
+        }
+
+        @NonNull
+        private static ConflatedSubscription[] conflated(@NonNull Subscription[] subscriptions) {
+            List<ConflatedSubscription> conflated = null;
+            for (Subscription subscription : subscriptions) {
+                if (subscription instanceof ConflatedSubscription) {
+                    if (conflated == null) {
+                        conflated = new ArrayList<>();
+                    }
+                    conflated.add((ConflatedSubscription) subscription);
+                }
+            }
+            return conflated == null ? NO_CONFLATED_SUBSCRIPTIONS : conflated.toArray(new ConflatedSubscription[conflated.size()]);
+        }
+
+        @NonNull
+        private static Subscription[] notConflated(@NonNull Subscription[] subscriptions, int conflatedCount) {
+            if (conflatedCount == 0) {
+                return subscriptions;
+            }
+            Subscription[] notConflated = new Subscription[subscriptions.length - conflatedCount];
+            int i = 0;
+            for (Subscription subscription : subscriptions) {
+                if (!(subscription instanceof ConflatedSubscription)) {
+                    notConflated[i++] = subscription;
+                }
+            }
+            return notConflated;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registered in place of a ThreadMode.BACKGROUND subscription when the bus delivers BACKGROUND events in order, holding the
+ * mailbox of events waiting to be delivered to it.
+ * <p>
+ * At most one task drains a mailbox at a time so the subscription receives its events one after another in the order they
+ * were posted, while the mailboxes of other subscriptions are drained in parallel on the rest of the pool.
+ */
+final class OrderedSubscription<T> extends ForwardingSubscription<T> {
+    /**
+     * Events a task delivers before handing the thread to other mailboxes
+     */
+    static final int DRAIN_LIMIT = 16;
+
+    @NonNull
+    private final Queue<Object> mailbox = new ConcurrentLinkedQueue<>();
+    /**
+     * Events offered but not yet taken, a task is scheduled or running while this is above 0
+     */
+    @NonNull
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private OrderedSubscription(@NonNull Subscription<T> subscription) {
+        super(subscription);
+    }
+
+    /**
+     * @return the subscriptions with every ThreadMode.BACKGROUND subscription wrapped, except conflating ones which never have
+     * more than one event waiting, or the same list if there are none
+     */
+    @NonNull
+    static List<Subscription<?>> wrap(@NonNull List<Subscription<?>> subscriptions) {
+        List<Subscription<?>> wrapped = null;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            Subscription<?> subscription = subscriptions.get(i);
+            if (subscription.getThreadMode() == ThreadMode.BACKGROUND && !(subscription instanceof ConflatedSubscription)) {
+                if (wrapped == null) {
+                    wrapped = new ArrayList<>(subscriptions.subList(0, i));
+                }
+                wrapped.add(wrap(subscription));
+            } else if (wrapped != null) {
+                wrapped.add(subscription);
+            }
+        }
+        return wrapped != null ? wrapped : subscriptions;
+    }
+
+    @NonNull
+    private static <T> OrderedSubscription<T> wrap(@NonNull Subscription<T> subscription) {
+        return new OrderedSubscription<>(subscription);
+    }
+
+    /**
+     * Adds event to the mailbox
+     *
+     * @return true if the mailbox was empty, in which case the caller must schedule a task draining it
+     */
+    boolean offer(@NonNull Object event) {
+        mailbox.offer(event);
+        return pending.getAndIncrement() == 0;
+    }
+
+    /**
+     * Takes the next event, only called by the task draining the mailbox while events are pending
+     */
+    @NonNull
+    Object take() {
+        return mailbox.poll();
+    }
+
+    /**
+     * Called by the draining task after it took an event
+     *
+     * @return true if more events are pending
+     */
+    boolean taken() {
+        return pending.decrementAndGet() > 0;
+    }
+}
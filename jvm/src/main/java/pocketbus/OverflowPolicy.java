@@ -0,0 +1,28 @@
+package pocketbus;
+
+/**
+ * What the bus does with a ThreadMode.BACKGROUND delivery when the bounded background queue is full,
+ * set with {@link Bus.Builder#setBackgroundQueueCapacity(int, OverflowPolicy)}.
+ * <p>
+ * Dropped and rejected deliveries are reported to {@link BusMetrics#onTaskRejected(ThreadMode, int, int)}.
+ */
+public enum OverflowPolicy {
+    /**
+     * The posting thread waits until the queue has room. A delivery is dropped if the posting thread is interrupted while waiting.
+     * Posting BACKGROUND events from BACKGROUND handlers can deadlock once every background thread is waiting.
+     */
+    BLOCK,
+    /**
+     * The new delivery is dropped
+     */
+    DROP_NEWEST,
+    /**
+     * The delivery that has waited longest, whatever its priority, is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * The new delivery is dropped and post throws a {@link java.util.concurrent.RejectedExecutionException}.
+     * Deliveries to the other ThreadModes of the same post are not affected.
+     */
+    FAIL_FAST
+}
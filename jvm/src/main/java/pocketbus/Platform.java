@@ -0,0 +1,74 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * The environment a {@link Bus} runs in.
+ * <p>
+ * On a plain JVM ThreadMode.MAIN defaults to a single dedicated thread and logging goes to java.util.logging.
+ * The Android library provides pocketbus.AndroidPlatform, which is picked up when it is on the classpath.
+ */
+class Platform {
+    private static final String ANDROID_PLATFORM = "pocketbus.AndroidPlatform";
+    private static final Platform PLATFORM = findPlatform();
+
+    @NonNull
+    static Platform get() {
+        return PLATFORM;
+    }
+
+    @NonNull
+    private static Platform findPlatform() {
+        try {
+            return (Platform) Class.forName(ANDROID_PLATFORM).newInstance();
+        } catch (ClassNotFoundException e) {
+            return new Platform();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create " + ANDROID_PLATFORM, e);
+        }
+    }
+
+    /**
+     * @return the Scheduler used for ThreadMode.MAIN when none is set on the {@link Bus.Builder}
+     */
+    @NonNull
+    Scheduler defaultMainScheduler() {
+        return Schedulers.single();
+    }
+
+    /**
+     * @return the Scheduler used for ThreadMode.MAIN when asynchronous main messages are requested, the default main Scheduler where
+     * the platform has no such messages
+     */
+    @NonNull
+    Scheduler asyncMainScheduler() {
+        return defaultMainScheduler();
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task, null if the runtime has no virtual threads (before Java 21)
+     */
+    @Nullable
+    ExecutorService virtualThreadExecutor() {
+        try {
+            // Looked up reflectively so the bus still builds for and runs on Java 7
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    void log(@NonNull String tag, @NonNull String msg) {
+        Logger.getLogger(tag).log(Level.INFO, msg);
+    }
+}
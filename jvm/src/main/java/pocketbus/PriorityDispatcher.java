@@ -0,0 +1,165 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs deliveries on a thread pool whose queue hands out the delivery with the highest {@link Dispatcher.Prioritized}
+ * priority first, and deliveries of the same priority in the order they were dispatched.
+ * <p>
+ * An adaptive pool measures how long deliveries wait in the queue and how busy its threads are, and at most every
+ * {@link #ADJUST_INTERVAL_NANOS}, when a delivery is dispatched or starts, doubles its size while deliveries wait longer than the
+ * target or removes a thread while they wait less than half of it and fewer than half of the threads were busy. The wait of the
+ * delivery at the head of the queue counts too, so the pool grows while every thread is stuck in a long handler. Idle threads of an
+ * adaptive pool stop after {@link #KEEP_ALIVE_SECONDS}, the size then follows the threads that are left, and threads are started
+ * again when deliveries arrive.
+ */
+final class PriorityDispatcher implements Dispatcher {
+    static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final long KEEP_ALIVE_SECONDS = 30;
+
+    @NonNull
+    private final ThreadPoolExecutor executor;
+    /**
+     * Orders deliveries of the same priority
+     */
+    @NonNull
+    private final AtomicLong sequence = new AtomicLong();
+    private final int minThreads;
+    private final int maxThreads;
+    /**
+     * 0 for a fixed pool
+     */
+    private final long targetWaitNanos;
+    /**
+     * Deliveries run, their time waiting in the queue and their time running since the last adjustment
+     */
+    @NonNull
+    private final AtomicLong tasks = new AtomicLong();
+    @NonNull
+    private final AtomicLong waitNanos = new AtomicLong();
+    @NonNull
+    private final AtomicLong runNanos = new AtomicLong();
+    @NonNull
+    private final AtomicLong lastAdjustment = new AtomicLong(System.nanoTime());
+
+    /**
+     * A fixed pool of threads
+     */
+    PriorityDispatcher(int threads) {
+        this(threads, threads, 0L);
+    }
+
+    /**
+     * An adaptive pool between minThreads and maxThreads aiming for deliveries to wait at most targetWaitNanos
+     */
+    PriorityDispatcher(int minThreads, int maxThreads, long targetWaitNanos) {
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetWaitNanos = targetWaitNanos;
+        this.executor = new ThreadPoolExecutor(minThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), Executors.defaultThreadFactory());
+        if (targetWaitNanos > 0) {
+            executor.allowCoreThreadTimeOut(true);
+            executor.prestartAllCoreThreads();
+        }
+    }
+
+    @Override
+    public void dispatch(@NonNull Runnable delivery) {
+        int priority = delivery instanceof Prioritized ? ((Prioritized) delivery).getPriority() : 0;
+        long dispatchedAt = targetWaitNanos > 0 ? System.nanoTime() : 0L;
+        executor.execute(new PrioritizedTask(delivery, priority, sequence.getAndIncrement(), dispatchedAt));
+        if (targetWaitNanos > 0) {
+            adjust(dispatchedAt);
+        }
+    }
+
+    @Override
+    public boolean tryDispatch(@NonNull Runnable delivery) {
+        // The queue is unbounded
+        dispatch(delivery);
+        return true;
+    }
+
+    /**
+     * @return the number of threads the pool currently runs deliveries on, the live threads of an adaptive pool
+     */
+    int getPoolSize() {
+        return targetWaitNanos > 0 ? executor.getPoolSize() : executor.getCorePoolSize();
+    }
+
+    private void started(long startedAt, long dispatchedAt) {
+        tasks.incrementAndGet();
+        waitNanos.addAndGet(startedAt - dispatchedAt);
+        adjust(startedAt);
+    }
+
+    private void adjust(long now) {
+        long last = lastAdjustment.get();
+        if (now - last < ADJUST_INTERVAL_NANOS || !lastAdjustment.compareAndSet(last, now)) {
+            return;
+        }
+        long taskCount = tasks.getAndSet(0);
+        long averageWaitNanos = waitNanos.getAndSet(0) / Math.max(1, taskCount);
+        // Deliveries stuck behind busy threads have not started so they are not in the average yet,
+        // the head of the queue has waited at least as long as the others of its priority
+        PrioritizedTask head = (PrioritizedTask) executor.getQueue().peek();
+        long queuedWaitNanos = head != null ? now - head.dispatchedAt : 0L;
+        long busyNanos = runNanos.getAndSet(0);
+        int size = executor.getCorePoolSize();
+        int liveThreads = executor.getPoolSize();
+        if (Math.max(averageWaitNanos, queuedWaitNanos) > targetWaitNanos && size < maxThreads) {
+            executor.setCorePoolSize(Math.min(maxThreads, size * 2));
+        } else if (liveThreads < size) {
+            // Idle threads timed out
+            executor.setCorePoolSize(Math.max(minThreads, liveThreads));
+        } else if (averageWaitNanos < targetWaitNanos / 2 && queuedWaitNanos < targetWaitNanos / 2
+                && busyNanos < (now - last) * size / 2 && size > minThreads) {
+            executor.setCorePoolSize(size - 1);
+        }
+    }
+
+    private final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        @NonNull
+        private final Runnable delivery;
+        private final int priority;
+        private final long sequence;
+        private final long dispatchedAt;
+
+        PrioritizedTask(@NonNull Runnable delivery, int priority, long sequence, long dispatchedAt) {
+            this.delivery = delivery;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.dispatchedAt = dispatchedAt;
+        }
+
+        @Override
+        public void run() {
+            if (targetWaitNanos == 0) {
+                delivery.run();
+                return;
+            }
+            long startedAt = System.nanoTime();
+            started(startedAt, dispatchedAt);
+            try {
+                delivery.run();
+            } finally {
+                runNanos.addAndGet(System.nanoTime() - startedAt);
+            }
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
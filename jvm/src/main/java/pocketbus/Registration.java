@@ -0,0 +1,43 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle to the subscriptions registered by a single call to {@link Bus#register(Object)}.
+ * <p>
+ * Unregistering through the handle removes exactly those subscriptions without asking the registry for a new
+ * {@link SubscriptionRegistration} or comparing subscriptions.
+ */
+public final class Registration {
+    @NonNull
+    private final Bus bus;
+    /**
+     * Guarded by the listenerLock of the bus
+     */
+    @NonNull
+    final List<Subscription> subscriptions;
+    volatile boolean registered = true;
+
+    Registration(@NonNull Bus bus, @NonNull List<? extends Subscription> subscriptions) {
+        this.bus = bus;
+        this.subscriptions = new ArrayList<>(subscriptions);
+    }
+
+    /**
+     * Unregister the subscriptions of this registration from the bus they were registered with
+     */
+    public void unregister() {
+        bus.unregister(this);
+    }
+
+    /**
+     * @return false once none of the subscriptions is registered, whether they were unregistered through this handle or
+     * otherwise, a handler returned false or their target has been collected
+     */
+    public boolean isRegistered() {
+        return registered && bus.isRegistered(this);
+    }
+}
@@ -0,0 +1,238 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sticky events replayed to subscriptions when they are registered.
+ * <p>
+ * Keeps the last depth events of each class, drops events older than the time to live and evicts the least recently used events
+ * once the cache holds more than maxEntries. Event classes are indexed by every type in their class hierarchy so a registering
+ * subscription only looks at the events it can receive.
+ */
+final class ReplayCache {
+    static final long NO_EXPIRATION = 0;
+
+    private static final Comparator<Entry> POST_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    };
+
+    private final int depth;
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+
+    @NonNull
+    private final Map<Class<?>, ArrayDeque<Entry>> entriesByClass = new HashMap<>();
+    @NonNull
+    private final Map<Class<?>, Set<Class<?>>> eventClassesByType = new HashMap<>();
+    /**
+     * Sentinel of the doubly linked list of all entries, lru.next is the least recently used entry
+     */
+    @NonNull
+    private final Entry lru = new Entry(null, 0, 0);
+    private int size;
+    private long sequence;
+
+    /**
+     * @param depth           number of events kept per event class
+     * @param timeToLiveNanos how long an event is replayed, {@link #NO_EXPIRATION} to keep events until they are evicted
+     * @param maxEntries      number of events kept across all event classes
+     */
+    ReplayCache(int depth, long timeToLiveNanos, int maxEntries) {
+        this.depth = depth;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.maxEntries = maxEntries;
+        lru.next = lru;
+        lru.prev = lru;
+    }
+
+    synchronized void put(@NonNull Object event) {
+        long now = System.nanoTime();
+        Class<?> eventClass = event.getClass();
+        ArrayDeque<Entry> entries = entriesByClass.get(eventClass);
+        if (entries != null && removeExpired(eventClass, entries, now)) {
+            // every event of the class expired and the class was removed, index it again below
+            entries = null;
+        }
+        if (entries == null) {
+            entries = new ArrayDeque<>();
+            entriesByClass.put(eventClass, entries);
+            for (Class<?> type : getTypes(eventClass)) {
+                Set<Class<?>> eventClasses = eventClassesByType.get(type);
+                if (eventClasses == null) {
+                    eventClasses = new LinkedHashSet<>();
+                    eventClassesByType.put(type, eventClasses);
+                }
+                eventClasses.add(eventClass);
+            }
+        } else {
+            while (entries.size() >= depth) {
+                unlink(entries.pollFirst());
+            }
+        }
+        Entry entry = new Entry(event, now, sequence++);
+        entries.addLast(entry);
+        linkLast(entry);
+        while (size > maxEntries) {
+            remove(lru.next);
+        }
+    }
+
+    synchronized boolean remove(@NonNull Class<?> eventClass) {
+        ArrayDeque<Entry> entries = entriesByClass.get(eventClass);
+        if (entries == null) {
+            return false;
+        }
+        for (Entry entry : entries) {
+            unlink(entry);
+        }
+        removeClass(eventClass);
+        return true;
+    }
+
+    /**
+     * @return the most recent event of exactly eventClass or null if there is none
+     */
+    @Nullable
+    synchronized Object get(@NonNull Class<?> eventClass) {
+        ArrayDeque<Entry> entries = entriesByClass.get(eventClass);
+        if (entries == null || removeExpired(eventClass, entries, System.nanoTime())) {
+            return null;
+        }
+        Entry entry = entries.peekLast();
+        touch(entry);
+        return entry.event;
+    }
+
+    /**
+     * @param type the event class of a subscription
+     * @return the events assignable to type in the order they were posted
+     */
+    @NonNull
+    synchronized List<Object> getAssignableTo(@NonNull Class<?> type) {
+        Set<Class<?>> eventClasses = eventClassesByType.get(type);
+        if (eventClasses == null) {
+            return Collections.emptyList();
+        }
+        long now = System.nanoTime();
+        List<Entry> matched = new ArrayList<>();
+        for (Class<?> eventClass : new ArrayList<>(eventClasses)) {
+            ArrayDeque<Entry> entries = entriesByClass.get(eventClass);
+            if (!removeExpired(eventClass, entries, now)) {
+                matched.addAll(entries);
+            }
+        }
+        Collections.sort(matched, POST_ORDER);
+        List<Object> events = new ArrayList<>(matched.size());
+        for (Entry entry : matched) {
+            touch(entry);
+            events.add(entry.event);
+        }
+        return events;
+    }
+
+    /**
+     * Drops the expired events at the head of entries
+     *
+     * @return true if no events of this class are left, in which case the class has been removed
+     */
+    private boolean removeExpired(@NonNull Class<?> eventClass, @NonNull ArrayDeque<Entry> entries, long now) {
+        if (timeToLiveNanos != NO_EXPIRATION) {
+            while (!entries.isEmpty() && now - entries.peekFirst().postedAt >= timeToLiveNanos) {
+                unlink(entries.pollFirst());
+            }
+            if (entries.isEmpty()) {
+                removeClass(eventClass);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(@NonNull Entry entry) {
+        Class<?> eventClass = entry.event.getClass();
+        ArrayDeque<Entry> entries = entriesByClass.get(eventClass);
+        unlink(entry);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            removeClass(eventClass);
+        }
+    }
+
+    private void removeClass(@NonNull Class<?> eventClass) {
+        entriesByClass.remove(eventClass);
+        for (Class<?> type : getTypes(eventClass)) {
+            Set<Class<?>> eventClasses = eventClassesByType.get(type);
+            if (eventClasses != null && eventClasses.remove(eventClass) && eventClasses.isEmpty()) {
+                eventClassesByType.remove(type);
+            }
+        }
+    }
+
+    private void linkLast(@NonNull Entry entry) {
+        entry.prev = lru.prev;
+        entry.next = lru;
+        lru.prev.next = entry;
+        lru.prev = entry;
+        size++;
+    }
+
+    private void unlink(@NonNull Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+        size--;
+    }
+
+    private void touch(@NonNull Entry entry) {
+        unlink(entry);
+        linkLast(entry);
+    }
+
+    /**
+     * @return the class, its super classes and all of the interfaces they implement
+     */
+    @NonNull
+    private static Set<Class<?>> getTypes(@NonNull Class<?> eventClass) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> clazz = eventClass; clazz != null; clazz = clazz.getSuperclass()) {
+            addInterfaces(clazz, types);
+        }
+        return types;
+    }
+
+    private static void addInterfaces(@NonNull Class<?> type, @NonNull Set<Class<?>> types) {
+        if (types.add(type)) {
+            for (Class<?> interfaceClass : type.getInterfaces()) {
+                addInterfaces(interfaceClass, types);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Object event;
+        final long postedAt;
+        final long sequence;
+        Entry prev;
+        Entry next;
+
+        Entry(Object event, long postedAt, long sequence) {
+            this.event = event;
+            this.postedAt = postedAt;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs deliveries on a fixed set of threads taking them from a preallocated ring buffer, so dispatching allocates
+ * no queue node or wrapper task.
+ * <p>
+ * Any number of threads may dispatch and any number of threads take deliveries. Every slot carries a sequence number telling
+ * whether it is free for the producer claiming position p (sequence == p) or holds the delivery for the consumer claiming
+ * position p (sequence == p + 1). Producers and consumers claim positions with a compare and set on their cursor and publish
+ * the slot by advancing its sequence. While the buffer is empty the threads wait with the {@link WaitStrategy}, and while it is
+ * full dispatching threads wait with it for room, so deliveries are never dropped. Deliveries run in the order they were
+ * dispatched, priorities are not taken into account.
+ * <p>
+ * With {@link WaitStrategy#PARK} a thread that found nothing to run for a while adds itself to the sleepers and parks until a
+ * dispatch unparks it. It checks the cursors after adding itself, and a dispatch looks for sleepers after claiming its position,
+ * so either the thread sees the delivery or the dispatch sees the thread.
+ */
+final class RingBufferDispatcher implements Dispatcher {
+    static final int SPIN_TRIES = 100;
+    static final int YIELD_TRIES = 100;
+    static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @NonNull
+    private final Runnable[] slots;
+    @NonNull
+    private final AtomicLongArray sequences;
+    private final int mask;
+    @NonNull
+    private final AtomicLong producerCursor = new AtomicLong();
+    @NonNull
+    private final AtomicLong consumerCursor = new AtomicLong();
+    @NonNull
+    private final WaitStrategy waitStrategy;
+    private final int threads;
+    /**
+     * The threads parked waiting for a dispatch, only used with {@link WaitStrategy#PARK}
+     */
+    @NonNull
+    private final ConcurrentLinkedQueue<Thread> sleepers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    RingBufferDispatcher(int threads, int capacity, @NonNull WaitStrategy waitStrategy) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Runnable[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.threads = threads;
+        ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        for (int i = 0; i < threads; i++) {
+            threadFactory.newThread(new Worker()).start();
+        }
+    }
+
+    @Override
+    public void dispatch(@NonNull Runnable delivery) {
+        int waited = 0;
+        while (!offer(delivery)) {
+            waited = idle(waitStrategy, waited);
+        }
+        wakeSleeper();
+    }
+
+    @Override
+    public boolean tryDispatch(@NonNull Runnable delivery) {
+        if (!offer(delivery)) {
+            return false;
+        }
+        wakeSleeper();
+        return true;
+    }
+
+    private void wakeSleeper() {
+        if (waitStrategy == WaitStrategy.PARK) {
+            Thread sleeper = sleepers.poll();
+            if (sleeper != null) {
+                LockSupport.unpark(sleeper);
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads deliveries run on
+     */
+    int getPoolSize() {
+        return threads;
+    }
+
+    private boolean offer(@NonNull Runnable delivery) {
+        long position = producerCursor.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (producerCursor.compareAndSet(position, position + 1)) {
+                    slots[index] = delivery;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = producerCursor.get();
+            } else if (difference < 0) {
+                // the consumer of the previous lap has not taken this slot yet
+                return false;
+            } else {
+                position = producerCursor.get();
+            }
+        }
+    }
+
+    @Nullable
+    private Runnable poll() {
+        long position = consumerCursor.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (consumerCursor.compareAndSet(position, position + 1)) {
+                    Runnable delivery = slots[index];
+                    slots[index] = null;
+                    sequences.lazySet(index, position + slots.length);
+                    return delivery;
+                }
+                position = consumerCursor.get();
+            } else if (difference < 0) {
+                // nothing has been published at this position yet
+                return null;
+            } else {
+                position = consumerCursor.get();
+            }
+        }
+    }
+
+    /**
+     * Parks the current thread until a dispatch unparks it, unless a delivery has been dispatched since the buffer was found empty
+     */
+    private void awaitDispatch() {
+        Thread thread = Thread.currentThread();
+        sleepers.offer(thread);
+        if (producerCursor.get() == consumerCursor.get()) {
+            LockSupport.park(this);
+        }
+        sleepers.remove(thread);
+    }
+
+    /**
+     * Waits once with strategy, parking for {@link #PARK_NANOS} at a time with PARK
+     *
+     * @param waited the value returned by the previous call, 0 when starting to wait
+     * @return the value to pass to the next call
+     */
+    static int idle(@NonNull WaitStrategy strategy, int waited) {
+        switch (strategy) {
+            case BUSY_SPIN:
+                return waited;
+            case YIELD:
+                Thread.yield();
+                return waited;
+            default:
+                if (waited < SPIN_TRIES) {
+                    return waited + 1;
+                }
+                if (waited < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                    return waited + 1;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+                return waited;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            int waited = 0;
+            while (true) {
+                Runnable delivery = poll();
+                if (delivery == null) {
+                    if (waitStrategy == WaitStrategy.PARK && waited == SPIN_TRIES + YIELD_TRIES) {
+                        awaitDispatch();
+                    } else {
+                        waited = idle(waitStrategy, waited);
+                    }
+                    continue;
+                }
+                waited = 0;
+                try {
+                    delivery.run();
+                } catch (Throwable e) {
+                    // keep the thread, there is no pool to replace it
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Notified when a {@link Subscription#handle(Object)} call takes longer than the budget of its ThreadMode,
+ * set with {@link Bus.Builder#setSlowHandlerListener(SlowHandlerListener)}.
+ * <p>
+ * Called on the thread that ran the handler right after it returned, keep the work done here short.
+ */
+public interface SlowHandlerListener {
+    /**
+     * @param targetClass   the class of the subscription's target or null if it has been collected
+     * @param eventClass    the class of the event that was handled
+     * @param threadMode    the ThreadMode the handler ran on
+     * @param durationNanos the time spent in the handler
+     */
+    void onSlowHandler(@Nullable Class<?> targetClass, @NonNull Class<?> eventClass, @NonNull ThreadMode threadMode, long durationNanos);
+}
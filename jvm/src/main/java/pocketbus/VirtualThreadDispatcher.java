@@ -0,0 +1,45 @@
+package pocketbus;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs every delivery on its own virtual thread, with at most maxConcurrency deliveries running at once.
+ * <p>
+ * Deliveries over the limit wait for a permit on their virtual thread, which is cheap, so posting never blocks. The permits
+ * are handed out fairly so waiting deliveries start in the order they were dispatched.
+ */
+final class VirtualThreadDispatcher implements Dispatcher {
+    @NonNull
+    private final Executor executor;
+    @NonNull
+    private final Semaphore permits;
+
+    VirtualThreadDispatcher(@NonNull Executor virtualThreadExecutor, int maxConcurrency) {
+        this.executor = virtualThreadExecutor;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public void dispatch(@NonNull final Runnable delivery) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                permits.acquireUninterruptibly();
+                try {
+                    delivery.run();
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean tryDispatch(@NonNull Runnable delivery) {
+        dispatch(delivery);
+        return true;
+    }
+}
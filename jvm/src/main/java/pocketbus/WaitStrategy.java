@@ -0,0 +1,27 @@
+package pocketbus;
+
+/**
+ * How the threads of the ring buffer set with {@link Bus.Builder#setBackgroundRingBuffer(int, WaitStrategy)} wait for deliveries
+ * while it is empty, and how posting threads wait for room while it is full.
+ * <p>
+ * The threads of the ring buffer run for the life of the process, so BUSY_SPIN and YIELD keep using CPU even after the bus is
+ * no longer used.
+ */
+public enum WaitStrategy {
+    /**
+     * Spin on the buffer without giving up the CPU. The lowest latency, but every background thread keeps a core fully busy
+     * even while no events are posted, so only suited to dedicated cores.
+     */
+    BUSY_SPIN,
+    /**
+     * Spin with Thread.yield() between checks, letting other runnable threads use the core. Low latency, but an idle background
+     * thread still uses about a full core when nothing else wants it.
+     */
+    YIELD,
+    /**
+     * Spin and yield briefly, then park until an event is posted. Uses no CPU while idle at the cost of unparking a thread,
+     * typically some microseconds, for the first event after a quiet period. Posting threads waiting for room in a full buffer
+     * park for short intervals.
+     */
+    PARK
+}
@@ -0,0 +1,1868 @@
+package pocketbus;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BusTest {
+
+    private Subscription<Foo> subscriptionMain = new Subscription<Foo>() {
+        private Foo target = new Foo("subMain");
+
+        @Override
+        public boolean handle(Foo foo) {
+            assertMain(foo);
+            return true;
+        }
+
+        @Override
+        public Class<Foo> getEventClass() {
+            return Foo.class;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return ThreadMode.MAIN;
+        }
+
+        @Override
+        public Foo getTarget() {
+            return target;
+        }
+    };
+
+    private Subscription<Foo> subscriptionBackground = new Subscription<Foo>() {
+        private Foo target = new Foo("subBack");
+
+        @Override
+        public boolean handle(Foo foo) {
+            assertBackground(foo);
+            return true;
+        }
+
+        @Override
+        public Class<Foo> getEventClass() {
+            return Foo.class;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return ThreadMode.BACKGROUND;
+        }
+
+        @Override
+        public Foo getTarget() {
+            return target;
+        }
+    };
+
+    private Subscription<Foo> subscriptionCurrent = new Subscription<Foo>() {
+        private Foo target = new Foo("subCurr");
+
+        @Override
+        public boolean handle(Foo foo) {
+            assertCurrent(foo);
+            return true;
+        }
+
+        @Override
+        public Class<Foo> getEventClass() {
+            return Foo.class;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return ThreadMode.CURRENT;
+        }
+
+        @Override
+        public Foo getTarget() {
+            return target;
+        }
+    };
+    private String uid;
+    private int eventCount = 0;
+
+    @Test
+    public void testDefault() {
+        Bus oDefault = Bus.getDefault();
+        Bus.setDefault(new Bus.Builder().build());
+        Bus nDefault = Bus.getDefault();
+        assertNotEquals(oDefault, nDefault);
+    }
+
+    @Test
+    public void testPost() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        bus.register(subscriptionMain);
+        bus.register(subscriptionBackground);
+        bus.register(subscriptionCurrent);
+
+        bus.post(new Foo(uid));
+        setTestUid(null);
+
+        bus.unregister(subscriptionMain);
+        bus.unregister(subscriptionBackground);
+        bus.unregister(subscriptionCurrent);
+        bus.post(new Foo("FAIL"));
+        assertEquals(3, eventCount);
+    }
+
+    @Test
+    public void testPostSchedulesOneTaskPerThreadMode() {
+        final int[] tasks = new int[ThreadMode.values().length];
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.from(countingExecutor(tasks, ThreadMode.MAIN)))
+                .setBackgroundScheduler(Schedulers.from(countingExecutor(tasks, ThreadMode.BACKGROUND)))
+                .setCurrentScheduler(Schedulers.from(countingExecutor(tasks, ThreadMode.CURRENT)))
+                .build();
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        for (ThreadMode threadMode : ThreadMode.values()) {
+            // The class, superclass and an interface of Integer
+            bus.register(configured(Integer.class, threadMode, false, 0, null, "Integer", received));
+            bus.register(configured(Number.class, threadMode, false, 0, null, "Number", received));
+            bus.register(configured(Comparable.class, threadMode, false, 0, null, "Comparable", received));
+        }
+        bus.post(1);
+        assertEquals(9, received.size());
+        for (ThreadMode threadMode : ThreadMode.values()) {
+            assertEquals("tasks on ThreadMode." + threadMode, 1, tasks[threadMode.ordinal()]);
+        }
+    }
+
+    /**
+     * @return an executor running tasks on the calling thread and counting them in tasks at the index of threadMode
+     */
+    private static Executor countingExecutor(final int[] tasks, final ThreadMode threadMode) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                synchronized (tasks) {
+                    tasks[threadMode.ordinal()]++;
+                }
+                command.run();
+            }
+        };
+    }
+
+    @Test
+    public void testSticky() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        bus.postSticky(0);
+        bus.postSticky(new Foo("foo"));
+        final int[] count = {0};
+        Subscription<Integer> subscription1 = new Subscription<Integer>() {
+            private Integer target = 1;
+
+            @Override
+            public boolean handle(Integer integer) {
+                assertEquals(Integer.valueOf(0), integer);
+                count[0]++;
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Integer getTarget() {
+                return target;
+            }
+        };
+        Subscription<Integer> subscription2 = new Subscription<Integer>() {
+            public Integer target = 2;
+
+            @Override
+            public boolean handle(Integer integer) {
+                assertEquals(Integer.valueOf(0), integer);
+                count[0]++;
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Integer getTarget() {
+                return target;
+            }
+        };
+        bus.register(subscription1);
+        assertEquals(1, count[0]);
+        assertEquals(Integer.valueOf(0), bus.getSticky(Integer.class));
+        assertTrue("Remove Sticky Event", bus.removeSticky(Integer.class));
+        assertFalse("Remove Sticky Event", bus.removeSticky(Integer.class));
+        assertNull(bus.getSticky(Integer.class));
+        bus.register(subscription2);
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    public void testStickyHierarchy() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        bus.postSticky(1);
+        bus.postSticky("sticky");
+        bus.postSticky(2L);
+        final List<Object> received = new ArrayList<>();
+        Subscription<Number> subscription = new Subscription<Number>() {
+            private Foo target = new Foo("subNumber");
+
+            @Override
+            public boolean handle(Number number) {
+                received.add(number);
+                return true;
+            }
+
+            @Override
+            public Class<Number> getEventClass() {
+                return Number.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        bus.register(subscription);
+        assertEquals(Arrays.<Object>asList(1, 2L), received);
+
+        bus.unregister(subscription);
+        assertTrue(bus.removeSticky(Integer.class));
+        bus.register(subscription);
+        assertEquals(Arrays.<Object>asList(1, 2L, 2L), received);
+    }
+
+    @Test
+    public void testReplayCache() throws InterruptedException {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setReplayDepth(2)
+                .setReplayMaxEntries(3)
+                .build();
+        bus.postSticky(1);
+        bus.postSticky(2);
+        bus.postSticky(3);
+        bus.postSticky(4L);
+        bus.postSticky(5L);
+        final List<Object> received = new ArrayList<>();
+        Subscription<Number> subscription = new Subscription<Number>() {
+            private Foo target = new Foo("subNumber");
+
+            @Override
+            public boolean handle(Number number) {
+                received.add(number);
+                return true;
+            }
+
+            @Override
+            public Class<Number> getEventClass() {
+                return Number.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        bus.register(subscription);
+        assertEquals(Arrays.<Object>asList(3, 4L, 5L), received);
+        assertEquals(3, (int) bus.getSticky(Integer.class));
+        assertEquals(5L, (long) bus.getSticky(Long.class));
+
+        Bus expiringBus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setReplayTimeToLive(1, TimeUnit.MILLISECONDS)
+                .build();
+        expiringBus.postSticky(1);
+        Thread.sleep(10);
+        assertNull(expiringBus.getSticky(Integer.class));
+        received.clear();
+        expiringBus.register(subscription);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testReplayAfterExpiry() throws InterruptedException {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setReplayTimeToLive(200, TimeUnit.MILLISECONDS)
+                .setReplayMaxEntries(1)
+                .build();
+        bus.postSticky(1);
+        Thread.sleep(250);
+        // Every Integer has expired, the new one must be indexed again
+        bus.postSticky(2);
+        assertEquals(2, (int) bus.getSticky(Integer.class));
+        final List<Object> received = new ArrayList<>();
+        bus.register(new Subscription<Integer>() {
+            private Foo target = new Foo("subInteger");
+
+            @Override
+            public boolean handle(Integer event) {
+                received.add(event);
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        });
+        assertEquals(Collections.<Object>singletonList(2), received);
+
+        // Evicts the re-posted Integer
+        bus.postSticky(3L);
+        assertNull(bus.getSticky(Integer.class));
+        assertEquals(3L, (long) bus.getSticky(Long.class));
+    }
+
+    @Test
+    public void testMetrics() {
+        final List<String> recorded = new ArrayList<>();
+        BusMetrics metrics = new BusMetrics() {
+            @Override
+            public void onPost(Class<?> eventClass, int subscriptions) {
+                recorded.add("post " + eventClass.getSimpleName() + " " + subscriptions);
+            }
+
+            @Override
+            public void onTaskScheduled(ThreadMode threadMode, int pendingTasks) {
+                recorded.add("scheduled " + threadMode + " " + pendingTasks);
+            }
+
+            @Override
+            public void onTaskStarted(ThreadMode threadMode, int pendingTasks, long queuedNanos) {
+                recorded.add("started " + threadMode + " " + pendingTasks);
+            }
+
+            @Override
+            public void onDelivered(Subscription<?> subscription, Object event, long durationNanos) {
+                recorded.add("delivered " + subscription.getThreadMode());
+            }
+
+            @Override
+            public void onSubscriptionsReaped(int count) {
+                recorded.add("reaped " + count);
+            }
+        };
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setMetrics(metrics)
+                .build();
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+        bus.register(subscriptionBackground);
+        bus.register(subscriptionCurrent);
+        bus.post(new Foo(uid));
+        bus.post("dead");
+        assertEquals(Arrays.asList("post Foo 2", "delivered CURRENT", "scheduled BACKGROUND 1", "started BACKGROUND 0",
+                "delivered BACKGROUND", "post String 0"), recorded);
+
+        recorded.clear();
+        bus.register(new Subscription<Integer>() {
+            private Foo target = new Foo("subInteger");
+
+            @Override
+            public boolean handle(Integer integer) {
+                return false;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        });
+        bus.post(1);
+        assertEquals(Arrays.asList("post Integer 1", "delivered CURRENT", "reaped 1"), recorded);
+    }
+
+    @Test
+    public void testSlowHandler() {
+        final List<String> slowHandlers = new ArrayList<>();
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setSlowHandlerThreshold(ThreadMode.MAIN, 1, TimeUnit.MILLISECONDS)
+                .setSlowHandlerListener(new SlowHandlerListener() {
+                    @Override
+                    public void onSlowHandler(Class<?> targetClass, Class<?> eventClass, ThreadMode threadMode, long durationNanos) {
+                        assertTrue(durationNanos > TimeUnit.MILLISECONDS.toNanos(1));
+                        slowHandlers.add(targetClass.getSimpleName() + " " + eventClass.getSimpleName() + " " + threadMode);
+                    }
+                })
+                .build();
+        for (final ThreadMode threadMode : ThreadMode.values()) {
+            bus.register(new Subscription<Integer>() {
+                private Foo target = new Foo("slow" + threadMode);
+
+                @Override
+                public boolean handle(Integer integer) {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        fail();
+                    }
+                    return true;
+                }
+
+                @Override
+                public Class<Integer> getEventClass() {
+                    return Integer.class;
+                }
+
+                @Override
+                public ThreadMode getThreadMode() {
+                    return threadMode;
+                }
+
+                @Override
+                public Foo getTarget() {
+                    return target;
+                }
+            });
+        }
+        bus.post(1);
+        assertEquals(Collections.singletonList("Foo Integer MAIN"), slowHandlers);
+    }
+
+    @Test
+    public void testMainDrainBudget() {
+        final List<Runnable> mainTasks = new ArrayList<>();
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainTasks.add(command);
+            }
+        };
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setMainDrainBudget(1, TimeUnit.MINUTES)
+                .build();
+        bus.register(subscriptionMain);
+        bus.postAll(new Foo(uid), new Foo(uid));
+        bus.post(new Foo(uid));
+        assertEquals(1, mainTasks.size());
+        mainTasks.remove(0).run();
+        assertEquals(3, eventCount);
+        assertTrue(mainTasks.isEmpty());
+
+        // Every delivery uses up the budget so each runs in its own turn
+        bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setMainDrainBudget(1, TimeUnit.NANOSECONDS)
+                .build();
+        bus.register(subscriptionMain);
+        bus.post(new Foo(uid));
+        bus.post(new Foo(uid));
+        assertEquals(1, mainTasks.size());
+        mainTasks.remove(0).run();
+        assertEquals(4, eventCount);
+        assertEquals(1, mainTasks.size());
+        mainTasks.remove(0).run();
+        assertEquals(5, eventCount);
+        assertTrue(mainTasks.isEmpty());
+    }
+
+    @Test
+    public void testConflating() {
+        final List<Runnable> mainTasks = new ArrayList<>();
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainTasks.add(command);
+            }
+        };
+        final List<Integer> received = new ArrayList<>();
+        final Object target = new Object();
+        ConfiguredSubscription<Integer> progress = new ConfiguredSubscription<Integer>() {
+            @Override
+            public boolean isConflating() {
+                return true;
+            }
+
+            @Override
+            public int getPriority() {
+                return 0;
+            }
+
+            @Override
+            public String getLane() {
+                return null;
+            }
+
+            @Override
+            public boolean handle(Integer event) {
+                received.add(event);
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.MAIN;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        };
+
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        Registration registration = bus.register(progress);
+        bus.post(1);
+        bus.post(2);
+        bus.postAll(3, 4);
+        assertEquals(1, mainTasks.size());
+        mainTasks.remove(0).run();
+        assertEquals(Collections.singletonList(4), received);
+
+        // Once delivered the next event schedules a new delivery
+        bus.post(5);
+        assertEquals(1, mainTasks.size());
+        mainTasks.remove(0).run();
+        assertEquals(Arrays.asList(4, 5), received);
+
+        registration.unregister();
+        bus.post(6);
+        assertTrue(mainTasks.isEmpty());
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setBackgroundThreadPoolSize(1)
+                .build();
+        bus.register(configured(Number.class, ThreadMode.CURRENT, false, 0, null, "low", received));
+        bus.register(configured(Integer.class, ThreadMode.CURRENT, false, -1, null, "lowest", received));
+        bus.register(configured(Integer.class, ThreadMode.CURRENT, false, 10, null, "high", received));
+        bus.register(configured(Number.class, ThreadMode.CURRENT, false, 0, null, "low2", received));
+        bus.post(1);
+        assertEquals(Arrays.<Object>asList("high", "low", "low2", "lowest"), received);
+
+        // A higher priority delivery waiting for the background thread runs before a lower priority one posted earlier,
+        // in a bounded queue too
+        assertBackgroundPriority(bus);
+        assertBackgroundPriority(new Bus.Builder()
+                .setBackgroundThreadPoolSize(1)
+                .setBackgroundQueueCapacity(4, OverflowPolicy.BLOCK)
+                .build());
+
+        // Conflating subscriptions keep their place in the priority order, whether delivered directly or scheduled
+        received.clear();
+        final List<Runnable> mainTasks = new ArrayList<>();
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainTasks.add(command);
+            }
+        };
+        Bus conflatingBus = new Bus.Builder()
+                .setMainScheduler(Schedulers.from(mainExecutor))
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .build();
+        conflatingBus.register(configured(Long.class, ThreadMode.CURRENT, false, 0, null, "low", received));
+        conflatingBus.register(configured(Long.class, ThreadMode.CURRENT, true, 100, null, "highConflated", received));
+        conflatingBus.register(configured(Long.class, ThreadMode.MAIN, false, 0, null, "main low", received));
+        conflatingBus.register(configured(Long.class, ThreadMode.MAIN, true, 100, null, "main highConflated", received));
+        conflatingBus.register(configured(Long.class, ThreadMode.MAIN, false, 200, null, "main highest", received));
+        conflatingBus.post(1L);
+        assertEquals(Arrays.<Object>asList("highConflated", "low"), received);
+        received.clear();
+        while (!mainTasks.isEmpty()) {
+            mainTasks.remove(0).run();
+        }
+        assertEquals(Arrays.<Object>asList("main highest", "main highConflated", "main low"), received);
+        received.clear();
+        conflatingBus.postAll(2L, 3L);
+        mainTasks.clear();
+        assertEquals(Arrays.<Object>asList("highConflated", "low", "highConflated", "low"), received);
+    }
+
+    /**
+     * Posts a low, a high and a low priority event while the single background thread is blocked
+     */
+    private static void assertBackgroundPriority(Bus bus) throws InterruptedException {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final Object target = new Object();
+        bus.register(new Subscription<String>() {
+            @Override
+            public boolean handle(String event) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return true;
+            }
+
+            @Override
+            public Class<String> getEventClass() {
+                return String.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+        bus.register(configured(Boolean.class, ThreadMode.BACKGROUND, false, 0, null, "background low", received));
+        bus.register(configured(Character.class, ThreadMode.BACKGROUND, false, 5, null, "background high", received));
+        bus.post("block");
+        bus.post(true);
+        bus.post('c');
+        bus.post(false);
+        blocked.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.<Object>asList("background high", "background low", "background low"), received);
+    }
+
+    private static <T> ConfiguredSubscription<T> configured(final Class<T> eventClass, final ThreadMode threadMode, final boolean conflating,
+                                                            final int priority, final String lane, final String name,
+                                                            final List<Object> received) {
+        final Object target = new Object();
+        return new ConfiguredSubscription<T>() {
+            @Override
+            public boolean isConflating() {
+                return conflating;
+            }
+
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+
+            @Override
+            public String getLane() {
+                return lane;
+            }
+
+            @Override
+            public boolean handle(T event) {
+                received.add(name);
+                return true;
+            }
+
+            @Override
+            public Class<T> getEventClass() {
+                return eventClass;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return threadMode;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        };
+    }
+
+    @Test
+    public void testLanes() {
+        final List<Runnable> laneTasks = new ArrayList<>();
+        Executor laneExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                laneTasks.add(command);
+            }
+        };
+        List<Object> received = new ArrayList<>();
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setLaneScheduler("io", Schedulers.from(laneExecutor))
+                .build();
+        bus.register(configured(Integer.class, ThreadMode.BACKGROUND, false, 0, null, "background", received));
+        bus.register(configured(Integer.class, ThreadMode.BACKGROUND, false, 0, "io", "io", received));
+        bus.post(1);
+        assertEquals(Collections.<Object>singletonList("background"), received);
+        assertEquals(1, laneTasks.size());
+        laneTasks.remove(0).run();
+        assertEquals(Arrays.<Object>asList("background", "io"), received);
+
+        received.clear();
+        bus.postAll(2, 3);
+        assertEquals(Arrays.<Object>asList("background", "background"), received);
+        assertEquals(2, laneTasks.size());
+
+        try {
+            bus.register(configured(Integer.class, ThreadMode.BACKGROUND, false, 0, "cpu", "cpu", received));
+            fail("Registered a subscription on a lane that is not bound");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            bus.register(configured(Integer.class, ThreadMode.MAIN, false, 0, "io", "main", received));
+            fail("Registered a ThreadMode.MAIN subscription on a lane");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOrderedBackground() throws InterruptedException {
+        final int eventCount = 200;
+        final CountDownLatch delivered = new CountDownLatch(2 * eventCount);
+        Bus bus = new Bus.Builder()
+                .setBackgroundThreadPoolSize(4)
+                .setOrderedBackgroundDelivery(true)
+                .build();
+        OrderRecordingSubscription first = new OrderRecordingSubscription(delivered);
+        OrderRecordingSubscription second = new OrderRecordingSubscription(delivered);
+        bus.register(first);
+        bus.register(second);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            expected.add(i);
+            if (i % 2 == 0) {
+                bus.post(i);
+            } else {
+                bus.postAll(Collections.singletonList(i));
+            }
+        }
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(expected, first.received);
+        assertEquals(expected, second.received);
+        assertFalse(first.overlapped);
+        assertFalse(second.overlapped);
+    }
+
+    @Test
+    public void testOrderedBackgroundFullQueue() throws InterruptedException {
+        // Mailboxes that outlast a drain must not wait for room in the queue they are drained from
+        assertOrderedDeliveryCompletes(new Bus.Builder()
+                .setBackgroundThreadPoolSize(4)
+                .setBackgroundQueueCapacity(4, OverflowPolicy.BLOCK));
+        assertOrderedDeliveryCompletes(new Bus.Builder()
+                .setBackgroundThreadPoolSize(4)
+                .setBackgroundRingBuffer(4, WaitStrategy.PARK));
+    }
+
+    private static void assertOrderedDeliveryCompletes(Bus.Builder builder) throws InterruptedException {
+        final int eventCount = 2000;
+        final int subscriberCount = 8;
+        CountDownLatch delivered = new CountDownLatch(eventCount * subscriberCount);
+        Bus bus = builder
+                .setOrderedBackgroundDelivery(true)
+                .build();
+        List<OrderRecordingSubscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < subscriberCount; i++) {
+            OrderRecordingSubscription subscription = new OrderRecordingSubscription(delivered);
+            subscriptions.add(subscription);
+            bus.register(subscription);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            expected.add(i);
+            bus.post(i);
+        }
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        for (OrderRecordingSubscription subscription : subscriptions) {
+            assertEquals(expected, subscription.received);
+        }
+    }
+
+    @Test
+    public void testOrderedBackgroundConflating() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setOrderedBackgroundDelivery(true)
+                .build();
+        List<Object> received = new ArrayList<>();
+        bus.postSticky(1);
+        // Conflating subscriptions have no mailbox, replay and posts must not treat them as ordered
+        bus.register(configured(Integer.class, ThreadMode.BACKGROUND, true, 0, null, "conflated", received));
+        bus.register(configured(Integer.class, ThreadMode.BACKGROUND, false, 0, null, "ordered", received));
+        assertEquals(Arrays.<Object>asList("conflated", "ordered"), received);
+        received.clear();
+        bus.post(2);
+        assertEquals(2, received.size());
+        assertTrue(received.containsAll(Arrays.asList("conflated", "ordered")));
+    }
+
+    private static final class OrderRecordingSubscription implements Subscription<Integer> {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final CountDownLatch delivered;
+        final Object target = new Object();
+        volatile boolean overlapped;
+
+        OrderRecordingSubscription(CountDownLatch delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public boolean handle(Integer event) {
+            if (running.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            received.add(event);
+            Thread.yield();
+            running.decrementAndGet();
+            delivered.countDown();
+            return true;
+        }
+
+        @Override
+        public Class<Integer> getEventClass() {
+            return Integer.class;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return ThreadMode.BACKGROUND;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+    }
+
+    @Test
+    public void testBackgroundFanOut() throws InterruptedException {
+        final int threads = 4;
+        // Every handler waits for the first threads handlers to start, which only finishes if they run on different threads at once
+        final AtomicReference<CountDownLatch> started = new AtomicReference<>(new CountDownLatch(threads));
+        final AtomicReference<CountDownLatch> delivered = new AtomicReference<>(new CountDownLatch(threads));
+        Bus bus = new Bus.Builder()
+                .setBackgroundThreadPoolSize(threads)
+                .setBackgroundFanOutChunkSize(1)
+                .build();
+        for (int i = 0; i < threads; i++) {
+            final Object target = new Object();
+            bus.register(new Subscription<Integer>() {
+                @Override
+                public boolean handle(Integer event) {
+                    started.get().countDown();
+                    try {
+                        if (started.get().await(5, TimeUnit.SECONDS)) {
+                            delivered.get().countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                    return true;
+                }
+
+                @Override
+                public Class<Integer> getEventClass() {
+                    return Integer.class;
+                }
+
+                @Override
+                public ThreadMode getThreadMode() {
+                    return ThreadMode.BACKGROUND;
+                }
+
+                @Override
+                public Object getTarget() {
+                    return target;
+                }
+            });
+        }
+
+        bus.post(1);
+        assertTrue(delivered.get().await(10, TimeUnit.SECONDS));
+
+        // A batch is split the same way
+        started.set(new CountDownLatch(threads));
+        delivered.set(new CountDownLatch(2 * threads));
+        bus.postAll(2, 3);
+        assertTrue(delivered.get().await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAdaptiveBackgroundPool() throws InterruptedException {
+        Bus bus = new Bus.Builder()
+                .setAdaptiveBackgroundPool(1, 4, 1, TimeUnit.MILLISECONDS)
+                .build();
+        assertEquals(1, bus.getBackgroundThreadPoolSize());
+        final int eventCount = 100;
+        final CountDownLatch delivered = new CountDownLatch(eventCount);
+        final Object target = new Object();
+        bus.register(new Subscription<Integer>() {
+            @Override
+            public boolean handle(Integer event) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                delivered.countDown();
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+
+        // Deliveries queue up behind the single thread so the pool grows to the maximum
+        for (int i = 0; i < eventCount; i++) {
+            bus.post(i);
+        }
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertEquals(4, bus.getBackgroundThreadPoolSize());
+        assertEquals(0, new Bus.Builder().setBackgroundScheduler(Schedulers.trampoline()).build().getBackgroundThreadPoolSize());
+    }
+
+    @Test
+    public void testAdaptiveBackgroundPoolStuckHandlers() throws InterruptedException {
+        Bus bus = new Bus.Builder()
+                .setAdaptiveBackgroundPool(1, 4, 1, TimeUnit.MILLISECONDS)
+                .build();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final Object target = new Object();
+        bus.register(new Subscription<Integer>() {
+            @Override
+            public boolean handle(Integer event) {
+                running.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+
+        // No delivery completes, the pool still grows from the wait of the queued ones
+        long deadline = System.currentTimeMillis() + 5000;
+        for (int i = 0; running.get() < 4 && System.currentTimeMillis() < deadline; i++) {
+            bus.post(i);
+            Thread.sleep(20);
+        }
+        try {
+            assertEquals(4, running.get());
+            assertEquals(4, bus.getBackgroundThreadPoolSize());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadBackground() throws InterruptedException {
+        Bus bus = new Bus.Builder()
+                .setVirtualThreadBackground(3)
+                .build();
+        // Falls back to the default pool of 2 threads before Java 21
+        boolean virtualThreads = Platform.get().virtualThreadExecutor() != null;
+        assertEquals(virtualThreads ? 0 : 2, bus.getBackgroundThreadPoolSize());
+
+        final int eventCount = 30;
+        final CountDownLatch delivered = new CountDownLatch(eventCount);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Object target = new Object();
+        bus.register(new Subscription<Integer>() {
+            @Override
+            public boolean handle(Integer event) {
+                int nowRunning = running.incrementAndGet();
+                while (true) {
+                    int max = maxRunning.get();
+                    if (nowRunning <= max || maxRunning.compareAndSet(max, nowRunning)) {
+                        break;
+                    }
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                running.decrementAndGet();
+                delivered.countDown();
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+        for (int i = 0; i < eventCount; i++) {
+            bus.post(i);
+        }
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testBackgroundRingBuffer() throws InterruptedException {
+        final Bus bus = new Bus.Builder()
+                .setBackgroundRingBuffer(4, WaitStrategy.PARK)
+                .build();
+        assertEquals(2, bus.getBackgroundThreadPoolSize());
+
+        final int eventsPerPoster = 500;
+        final CountDownLatch delivered = new CountDownLatch(2 * eventsPerPoster);
+        final boolean[] received = new boolean[2 * eventsPerPoster];
+        final Object target = new Object();
+        bus.register(new Subscription<Integer>() {
+            @Override
+            public boolean handle(Integer event) {
+                synchronized (received) {
+                    assertFalse(received[event]);
+                    received[event] = true;
+                }
+                delivered.countDown();
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+
+        // Two posters overrun the four slots, so they wait for room and every event still arrives exactly once
+        Thread[] posters = new Thread[2];
+        for (int p = 0; p < posters.length; p++) {
+            final int first = p * eventsPerPoster;
+            posters[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = first; i < first + eventsPerPoster; i++) {
+                        bus.post(i);
+                    }
+                }
+            });
+            posters[p].start();
+        }
+        for (Thread poster : posters) {
+            poster.join();
+        }
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+
+        // The idle threads have parked, a post wakes one of them
+        Thread.sleep(100);
+        final CountDownLatch woken = new CountDownLatch(1);
+        bus.register(new Subscription<String>() {
+            @Override
+            public boolean handle(String event) {
+                woken.countDown();
+                return true;
+            }
+
+            @Override
+            public Class<String> getEventClass() {
+                return String.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+        bus.post("wake");
+        assertTrue(woken.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBackgroundOverflow() throws InterruptedException {
+        assertEquals(Arrays.asList(1, 2), postWithFullBackgroundQueue(OverflowPolicy.DROP_NEWEST));
+        assertEquals(Arrays.asList(1, 3), postWithFullBackgroundQueue(OverflowPolicy.DROP_OLDEST));
+        assertEquals(Arrays.asList(1, 2), postWithFullBackgroundQueue(OverflowPolicy.FAIL_FAST));
+    }
+
+    /**
+     * Posts 1, 2 and 3 to a single background thread blocked by 1 with room for one waiting delivery
+     *
+     * @return the events delivered
+     */
+    private List<Integer> postWithFullBackgroundQueue(OverflowPolicy overflowPolicy) throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(2);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final int[] rejected = new int[1];
+        final Object target = new Object();
+        BusMetrics metrics = new BusMetrics() {
+            @Override
+            public void onTaskRejected(ThreadMode threadMode, int pendingTasks, int events) {
+                assertEquals(ThreadMode.BACKGROUND, threadMode);
+                rejected[0] += events;
+            }
+        };
+        Bus bus = new Bus.Builder()
+                .setBackgroundThreadPoolSize(1)
+                .setBackgroundQueueCapacity(1, overflowPolicy)
+                .setMetrics(metrics)
+                .build();
+        bus.register(new Subscription<Integer>() {
+            @Override
+            public boolean handle(Integer event) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                received.add(event);
+                delivered.countDown();
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+
+        bus.post(1);
+        bus.post(2);
+        try {
+            bus.post(3);
+            assertNotEquals(OverflowPolicy.FAIL_FAST, overflowPolicy);
+        } catch (RejectedExecutionException e) {
+            assertEquals(OverflowPolicy.FAIL_FAST, overflowPolicy);
+        }
+        assertEquals(1, rejected[0]);
+        blocked.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        return received;
+    }
+
+    @Test
+    public void testRegistrar() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        Bus.setDebug(true);
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        SubscriptionRegistration subscriptionRegistration = new SubscriptionRegistration() {
+            @Override
+            public List<Subscription<?>> getSubscriptions() {
+                return Collections.unmodifiableList(Arrays.<Subscription<?>>asList(subscriptionMain, subscriptionBackground, subscriptionCurrent));
+            }
+        };
+
+        bus.register(subscriptionRegistration);
+
+        bus.post(new Foo(uid));
+        bus.post(1);
+        setTestUid(null);
+
+        bus.unregister(subscriptionRegistration);
+
+        bus.post(new Foo("FAIL"));
+        assertEquals(3, eventCount);
+
+    }
+
+    @Test
+    public void testRegistrationHandle() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        SubscriptionRegistration subscriptionRegistration = new SubscriptionRegistration() {
+            @Override
+            public List<Subscription<?>> getSubscriptions() {
+                return Collections.unmodifiableList(Arrays.<Subscription<?>>asList(subscriptionMain, subscriptionBackground));
+            }
+        };
+
+        Registration registration = bus.register(subscriptionRegistration);
+        Registration currentRegistration = bus.register(subscriptionCurrent);
+        assertTrue(registration.isRegistered());
+
+        bus.post(new Foo(uid));
+        assertEquals(3, eventCount);
+
+        registration.unregister();
+        assertFalse(registration.isRegistered());
+        assertTrue(currentRegistration.isRegistered());
+        bus.post(new Foo(uid));
+        assertEquals(4, eventCount);
+
+        bus.unregister(registration);
+        bus.unregister(currentRegistration);
+        bus.post(new Foo("FAIL"));
+        assertEquals(4, eventCount);
+
+        // Removed without the handle
+        currentRegistration = bus.register(subscriptionCurrent);
+        assertTrue(currentRegistration.isRegistered());
+        bus.unregister(subscriptionCurrent);
+        assertFalse(currentRegistration.isRegistered());
+
+        final Object target = new Object();
+        Registration onceRegistration = bus.register(new Subscription<Character>() {
+            @Override
+            public boolean handle(Character event) {
+                return false;
+            }
+
+            @Override
+            public Class<Character> getEventClass() {
+                return Character.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Object getTarget() {
+                return target;
+            }
+        });
+        assertTrue(onceRegistration.isRegistered());
+        bus.post('x');
+        assertFalse(onceRegistration.isRegistered());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilderException() {
+        Bus.Builder builder = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundThreadPoolSize(1);
+        assertEquals(1, builder.backgroundThreadPoolSize);
+        new Bus.Builder().setBackgroundThreadPoolSize(0);
+    }
+
+    @Test
+    public void testNullClass() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setEventCleanupCount(1)
+                .build();
+        Subscription<Foo> subscription = new Subscription<Foo>() {
+            private Foo target = new Foo("sub");
+
+            @Override
+            public boolean handle(Foo foo) {
+                return true;
+            }
+
+            @Override
+            public Class<Foo> getEventClass() {
+                return null;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        try {
+            bus.register(subscription);
+            fail("NullPointerException should be thrown on register");
+        } catch (NullPointerException e) {
+            // nothing needed
+        }
+        try {
+            bus.unregister(subscription);
+            fail("NullPointerException should be thrown on unregister");
+        } catch (NullPointerException e) {
+            // nothing needed
+        }
+    }
+
+    @Test
+    public void testCollectedTargetRemoved() throws InterruptedException {
+        final AtomicInteger reaped = new AtomicInteger();
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setMetrics(new BusMetrics() {
+                    @Override
+                    public void onSubscriptionsReaped(int count) {
+                        reaped.addAndGet(count);
+                    }
+                })
+                .build();
+        Object target = new Object();
+        final WeakReference<Object> targetRef = new WeakReference<>(target);
+        SubscriptionRegistration subscriptionRegistration = new SubscriptionRegistration() {
+            @Override
+            public List<Subscription<?>> getSubscriptions() {
+                return Arrays.<Subscription<?>>asList(new WeakTargetSubscription<>(Integer.class, ThreadMode.CURRENT, targetRef),
+                        new WeakTargetSubscription<>(Integer.class, ThreadMode.BACKGROUND, targetRef));
+            }
+        };
+        Registration registration = bus.register(subscriptionRegistration);
+        assertTrue(registration.isRegistered());
+
+        //noinspection UnusedAssignment
+        target = null;
+        // Posting an event nothing subscribes to never calls handle, only the ReferenceQueue can remove the subscriptions
+        for (int i = 0; i < 50 && reaped.get() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            bus.post("unrelated");
+        }
+        assertEquals(2, reaped.get());
+        assertFalse(registration.isRegistered());
+        assertNull(targetRef.get());
+    }
+
+    private static final class WeakTargetSubscription<T> implements Subscription<T> {
+        private final Class<T> eventClass;
+        private final ThreadMode threadMode;
+        private final WeakReference<Object> targetRef;
+
+        WeakTargetSubscription(Class<T> eventClass, ThreadMode threadMode, WeakReference<Object> targetRef) {
+            this.eventClass = eventClass;
+            this.threadMode = threadMode;
+            this.targetRef = targetRef;
+        }
+
+        @Override
+        public boolean handle(T event) {
+            return targetRef.get() != null;
+        }
+
+        @Override
+        public Class<T> getEventClass() {
+            return eventClass;
+        }
+
+        @Override
+        public ThreadMode getThreadMode() {
+            return threadMode;
+        }
+
+        @Override
+        public Object getTarget() {
+            return targetRef.get();
+        }
+    }
+
+    @Test
+    public void testAutoUnregister() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .setEventCleanupCount(1)
+                .build();
+        Subscription<Foo> subscription1 = new Subscription<Foo>() {
+            private Foo target = new Foo("sub1");
+
+            @Override
+            public boolean handle(Foo foo) {
+                assertMain(foo);
+                return true;
+            }
+
+            @Override
+            public Class<Foo> getEventClass() {
+                return Foo.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        Subscription<Foo> subscription2 = new Subscription<Foo>() {
+            private Foo target = new Foo("sub2");
+
+            @Override
+            public boolean handle(Foo foo) {
+                assertMain(foo);
+                return true;
+            }
+
+            @Override
+            public Class<Foo> getEventClass() {
+                return Foo.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        Subscription<Integer> subscription3 = new Subscription<Integer>() {
+            private Integer target = null;
+
+            @Override
+            public boolean handle(Integer integer) {
+                if (target == null) {
+                    return false;
+                }
+                fail("Method handle in Integer Subscription should never be called");
+                return false;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Integer getTarget() {
+                return target;
+            }
+        };
+        Subscription<Foo> subscription4 = new Subscription<Foo>() {
+            private Foo target = new Foo("sub4");
+
+            @Override
+            public boolean handle(Foo foo) {
+                assertBackground(foo);
+                return true;
+            }
+
+            @Override
+            public Class<Foo> getEventClass() {
+                return Foo.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        Subscription<Foo> subscription5 = new Subscription<Foo>() {
+            private Foo target = new Foo("sub5");
+
+            @Override
+            public boolean handle(Foo foo) {
+                assertMain(foo);
+                return true;
+            }
+
+            @Override
+            public Class<Foo> getEventClass() {
+                return Foo.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.MAIN;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        bus.register(subscription1);
+        bus.register(subscription2);
+        bus.register(subscription3);
+        bus.register(subscription4);
+        bus.register(subscription5);
+        setTestUid("1");
+        bus.post(new Foo("1"));
+        subscription1 = null;
+        subscription3 = null;
+        subscription4 = null;
+        subscription5 = null;
+        System.gc();
+        setTestUid("2");
+        bus.post(new Foo("2"));
+        bus.post(0);
+//        assertEquals(5, eventCount); // This may fail due to other system gcs and how they clean up things
+        // TODO fix this test
+    }
+
+    @Test
+    public void testRegisterAfterPost() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        final int[] count = {0};
+        Subscription<Object> subscription = new Subscription<Object>() {
+            private Foo target = new Foo("subObject");
+
+            @Override
+            public boolean handle(Object o) {
+                count[0]++;
+                return true;
+            }
+
+            @Override
+            public Class<Object> getEventClass() {
+                return Object.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        bus.register(subscriptionCurrent);
+        bus.post(new Foo(uid));
+        bus.register(subscription);
+        bus.post(new Foo(uid));
+        assertEquals(2, eventCount);
+        assertEquals(1, count[0]);
+
+        bus.unregister(subscriptionCurrent);
+        bus.post(new Foo(uid));
+        assertEquals(2, eventCount);
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testNestedCurrentPost() {
+        final Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .build();
+        final StringBuilder order = new StringBuilder();
+        Subscription<Integer> subscription = new Subscription<Integer>() {
+            private Foo target = new Foo("subNested");
+
+            @Override
+            public boolean handle(Integer integer) {
+                order.append('<').append(integer);
+                if (integer < 3) {
+                    bus.post(integer + 1);
+                }
+                order.append('>');
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.CURRENT;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        bus.register(subscription);
+        bus.post(1);
+        assertEquals("<1<2<3>>>", order.toString());
+    }
+
+    @Test
+    public void testPostAll() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        final StringBuilder order = new StringBuilder();
+        Subscription<Integer> subscription = new Subscription<Integer>() {
+            private Foo target = new Foo("subAll");
+
+            @Override
+            public boolean handle(Integer integer) {
+                order.append(integer);
+                return true;
+            }
+
+            @Override
+            public Class<Integer> getEventClass() {
+                return Integer.class;
+            }
+
+            @Override
+            public ThreadMode getThreadMode() {
+                return ThreadMode.BACKGROUND;
+            }
+
+            @Override
+            public Foo getTarget() {
+                return target;
+            }
+        };
+        String uid = UUID.randomUUID().toString();
+        setTestUid(uid);
+
+        bus.register(subscriptionMain);
+        bus.register(subscriptionCurrent);
+        bus.register(subscription);
+
+        bus.postAll(1, new Foo(uid), 2, 3);
+        assertEquals("123", order.toString());
+        assertEquals(2, eventCount);
+
+        bus.postAll(Arrays.asList(4, new Foo(uid)));
+        assertEquals("1234", order.toString());
+        assertEquals(4, eventCount);
+
+        try {
+            bus.postAll(5, null);
+            fail("NullPointerException not thrown");
+        } catch (NullPointerException e) {
+            // Nothing needed
+        }
+        assertEquals("1234", order.toString());
+    }
+
+    @Test
+    public void testPostNull() {
+        Bus bus = new Bus.Builder()
+                .setMainScheduler(Schedulers.trampoline())
+                .setBackgroundScheduler(Schedulers.trampoline())
+                .setCurrentScheduler(Schedulers.trampoline())
+                .build();
+        bus.register(subscriptionCurrent);
+        try {
+            bus.post(null);
+            fail("NullPointerException not thrown");
+        } catch (NullPointerException e) {
+            // Nothing needed
+        }
+        try {
+            bus.postSticky(null);
+            fail("NullPointerException not thrown");
+        } catch (NullPointerException e) {
+            // Nothing needed
+        }
+    }
+
+    private void setTestUid(String uid) {
+        this.uid = uid;
+    }
+
+    private void assertMain(Foo foo) {
+        assertEquals(uid, foo.uid);
+        eventCount++;
+    }
+
+    private void assertBackground(Foo foo) {
+        assertEquals(uid, foo.uid);
+        eventCount++;
+    }
+
+    private void assertCurrent(Foo foo) {
+        assertEquals(uid, foo.uid);
+        eventCount++;
+    }
+}
\ No newline at end of file
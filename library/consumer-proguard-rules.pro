@@ -0,0 +1,4 @@
+# Loaded reflectively by pocketbus.Platform
+-keep class pocketbus.AndroidPlatform {
+    <init>();
+}
@@ -0,0 +1,44 @@
+package pocketbus;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+
+/**
+ * Runs ThreadMode.MAIN on the Android main thread, optionally with asynchronous messages, and logs to logcat.
+ * <p>
+ * Loaded reflectively by {@link Platform}, do not rename or remove the public no-arg constructor.
+ */
+final class AndroidPlatform extends Platform {
+    public AndroidPlatform() {
+    }
+
+    @NonNull
+    @Override
+    Scheduler defaultMainScheduler() {
+        return AndroidSchedulers.mainThread();
+    }
+
+    @NonNull
+    @Override
+    Scheduler asyncMainScheduler() {
+        return new AsyncHandlerScheduler(Looper.getMainLooper());
+    }
+
+    @Nullable
+    @Override
+    ExecutorService virtualThreadExecutor() {
+        return null;
+    }
+
+    @Override
+    void log(@NonNull String tag, @NonNull String msg) {
+        Log.d(tag, msg);
+    }
+}
@@ -0,0 +1,140 @@
+package pocketbus;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Schedules work on a Looper using asynchronous messages, which are not held back by the sync barrier the Choreographer
+ * posts while waiting for the next frame.
+ * <p>
+ * Asynchronous messages are public API from Android 5.1 (API 22) and hidden API from 4.1 (API 16). Where they are
+ * unavailable this falls back to ordinary messages.
+ */
+final class AsyncHandlerScheduler extends Scheduler {
+    @NonNull
+    private final Handler handler;
+    private final boolean async;
+
+    AsyncHandlerScheduler(@NonNull Looper looper) {
+        this.handler = new Handler(looper);
+        this.async = isAsyncSupported();
+    }
+
+    @SuppressLint("NewApi")
+    static boolean isAsyncSupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) {
+            // Hidden API before 22, make sure this device actually has it
+            Message message = Message.obtain();
+            try {
+                message.setAsynchronous(true);
+            } catch (NoSuchMethodError e) {
+                return false;
+            } finally {
+                message.recycle();
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public Disposable scheduleDirect(@NonNull Runnable run, long delay, @NonNull TimeUnit unit) {
+        ScheduledRunnable scheduled = new ScheduledRunnable(handler, RxJavaPlugins.onSchedule(run));
+        send(scheduled, null, delay, unit);
+        return scheduled;
+    }
+
+    @NonNull
+    @Override
+    public Worker createWorker() {
+        return new HandlerWorker();
+    }
+
+    @SuppressLint("NewApi")
+    private void send(@NonNull ScheduledRunnable scheduled, Object token, long delay, @NonNull TimeUnit unit) {
+        Message message = Message.obtain(handler, scheduled);
+        message.obj = token;
+        if (async) {
+            message.setAsynchronous(true);
+        }
+        handler.sendMessageDelayed(message, Math.max(0L, unit.toMillis(delay)));
+    }
+
+    private final class HandlerWorker extends Worker {
+        private volatile boolean disposed;
+
+        @NonNull
+        @Override
+        public Disposable schedule(@NonNull Runnable run, long delay, @NonNull TimeUnit unit) {
+            if (disposed) {
+                return Disposables.disposed();
+            }
+            ScheduledRunnable scheduled = new ScheduledRunnable(handler, RxJavaPlugins.onSchedule(run));
+            // This worker is the token so dispose() removes all of its messages at once
+            send(scheduled, this, delay, unit);
+            if (disposed) {
+                handler.removeCallbacks(scheduled);
+                return Disposables.disposed();
+            }
+            return scheduled;
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            handler.removeCallbacksAndMessages(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+
+    private static final class ScheduledRunnable implements Runnable, Disposable {
+        @NonNull
+        private final Handler handler;
+        @NonNull
+        private final Runnable delegate;
+        private volatile boolean disposed;
+
+        ScheduledRunnable(@NonNull Handler handler, @NonNull Runnable delegate) {
+            this.handler = handler;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                delegate.run();
+            } catch (Throwable t) {
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package pocketbus;
+
+import android.os.Build;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.LOLLIPOP_MR1)
+public class AsyncHandlerSchedulerTest {
+    private int sdkInt;
+
+    @Before
+    public void setUp() {
+        sdkInt = Build.VERSION.SDK_INT;
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdkInt);
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void testAsyncSupported() {
+        assertTrue(AsyncHandlerScheduler.isAsyncSupported());
+    }
+
+    @Test
+    public void testFallbackBeforeJellyBean() {
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1);
+        assertFalse(AsyncHandlerScheduler.isAsyncSupported());
+
+        // Ordinary messages still deliver
+        final List<String> ran = new ArrayList<>();
+        new AsyncHandlerScheduler(Looper.getMainLooper()).scheduleDirect(new Recording(ran, "direct"));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(Arrays.asList("direct"), ran);
+    }
+
+    @Test
+    public void testWorkerDisposeRemovesPendingMessages() {
+        final List<String> ran = new ArrayList<>();
+        AsyncHandlerScheduler scheduler = new AsyncHandlerScheduler(Looper.getMainLooper());
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Recording(ran, "now"));
+        worker.schedule(new Recording(ran, "delayed"), 1, TimeUnit.SECONDS);
+        scheduler.scheduleDirect(new Recording(ran, "direct"));
+
+        worker.dispose();
+        assertTrue(worker.isDisposed());
+        Disposable afterDispose = worker.schedule(new Recording(ran, "after dispose"));
+        assertTrue(afterDispose.isDisposed());
+
+        // Only the messages of the worker are removed
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(Arrays.asList("direct"), ran);
+    }
+
+    private static final class Recording implements Runnable {
+        private final List<String> ran;
+        private final String name;
+
+        Recording(List<String> ran, String name) {
+            this.ran = ran;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            ran.add(name);
+        }
+    }
+}
@@ -14,7 +14,6 @@ public class App extends Application {
         super.onCreate();
         LeakCanary.install(this);
         Bus bus = new Bus.Builder()
-                .setEventCleanupCount(21)
                 .build();
         bus.setRegistry(new BusRegistry());
         Bus.setDefault(bus);